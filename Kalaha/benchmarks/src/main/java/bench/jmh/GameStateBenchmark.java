@@ -0,0 +1,141 @@
+package bench.jmh;
+
+import bench.Positions;
+import java.util.concurrent.TimeUnit;
+import kalaha.Board;
+import kalaha.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the game state operations, on each of the reference
+ * positions.
+ *
+ * A GameState move changes the state, so makeMove() is measured on a fresh
+ * clone each time, and includes the cost of clone(), which is measured on
+ * its own as well. The packed Board used by the search is measured with
+ * makeMove() followed by unmakeMove().
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark
+{
+    /**
+     * Index into Positions.REFERENCE.
+     */
+    @Param({"0", "1", "2", "3", "4"})
+    public int position;
+
+    private String boardString;
+    private GameState state;
+    private Board board;
+    private int move;
+
+    /**
+     * Parses the position and picks the first legal move.
+     */
+    @Setup
+    public void setup()
+    {
+        boardString = Positions.REFERENCE[position];
+        state = new GameState(boardString);
+        board = state.toBoard();
+        move = 1;
+        while (!state.moveIsPossible(move)) move++;
+    }
+
+    /**
+     * Clones the state and makes a move on the clone.
+     *
+     * @return The changed clone
+     */
+    @Benchmark
+    public GameState makeMove()
+    {
+        GameState s = state.clone();
+        s.makeMove(move);
+        return s;
+    }
+
+    /**
+     * Clones the state.
+     *
+     * @return The clone
+     */
+    @Benchmark
+    public GameState cloneState()
+    {
+        return state.clone();
+    }
+
+    /**
+     * Creates the board string sent by the server.
+     *
+     * @return Board string
+     */
+    @Benchmark
+    public String toBoardString()
+    {
+        return state.toString();
+    }
+
+    /**
+     * Parses a board string received from the server.
+     *
+     * @return Parsed state
+     */
+    @Benchmark
+    public GameState parse()
+    {
+        return new GameState(boardString);
+    }
+
+    /**
+     * Checks for game end, which also sweeps an ended game.
+     *
+     * @return True if the game has ended
+     */
+    @Benchmark
+    public boolean gameEnded()
+    {
+        return state.gameEnded();
+    }
+
+    /**
+     * Checks for game end without changing the state.
+     *
+     * @return True if the game has ended
+     */
+    @Benchmark
+    public boolean isTerminal()
+    {
+        return state.isTerminal();
+    }
+
+    /**
+     * Makes and takes back a move on the packed board.
+     *
+     * @return Hash after the move
+     */
+    @Benchmark
+    public long boardMakeUnmake()
+    {
+        board.makeMove(move);
+        long hash = board.getHash();
+        board.unmakeMove();
+        return hash;
+    }
+}
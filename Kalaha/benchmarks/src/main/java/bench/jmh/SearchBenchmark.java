@@ -0,0 +1,86 @@
+package bench.jmh;
+
+import ai.MiniMax;
+import ai.TranspositionTable;
+import bench.Positions;
+import java.util.concurrent.TimeUnit;
+import kalaha.Board;
+import kalaha.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of complete fixed depth searches with the AI's MiniMax, from
+ * each of the reference positions. The alpha-beta search is called
+ * directly for the given depth, without iterative deepening or the clock.
+ * The transposition table is cleared before every search, outside the
+ * measured time, so each search does the same work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark
+{
+    /**
+     * Index into Positions.REFERENCE.
+     */
+    @Param({"0", "1", "2", "3", "4"})
+    public int position;
+
+    /**
+     * Search depth.
+     */
+    @Param({"6", "8", "10"})
+    public int depth;
+
+    private Board board;
+    private TranspositionTable table;
+    private MiniMax search;
+
+    /**
+     * Creates the search and parses the position.
+     */
+    @Setup
+    public void setup()
+    {
+        board = new GameState(Positions.REFERENCE[position]).toBoard();
+        table = new TranspositionTable(16);
+        search = new MiniMax(table);
+    }
+
+    /**
+     * Clears the table and sets up the search before each call. A search
+     * takes milliseconds, so the overhead of a per invocation setup is
+     * small in comparison.
+     */
+    @Setup(Level.Invocation)
+    public void prepare()
+    {
+        table.clear();
+        search.prepare(board);
+    }
+
+    /**
+     * Searches the position to the fixed depth.
+     *
+     * @return Packed score and best move
+     */
+    @Benchmark
+    public int search()
+    {
+        return search.miniMaxAlgorithmImplementation(depth, -MiniMax.INF, MiniMax.INF);
+    }
+}
@@ -3,6 +3,8 @@ package ai;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
@@ -12,6 +14,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 
 import kalaha.Commands;
+import kalaha.ConnectionExecutor;
 import kalaha.Errors;
 import kalaha.GameState;
 import kalaha.KalahaMain;
@@ -28,7 +31,6 @@ public class AIClient implements Runnable {
 
 	private PrintWriter out;
 	private BufferedReader in;
-	private Thread thr;
 	private Socket socket;
 	private boolean running;
 	private boolean connected;
@@ -44,6 +46,30 @@ public class AIClient implements Runnable {
 		// to change anything here.
 		initGUI();
 
+		miniMax.setEvaluator(Global.evaluator);
+
+		// Endgame tablebase, if one has been generated
+		File tablebase = new File(Global.tablebaseFile);
+		if (tablebase.exists()) {
+			try {
+				miniMax.setTablebase(EndgameTablebase.load(tablebase));
+				addText("Loaded endgame tablebase " + tablebase);
+			} catch (IOException ex) {
+				addText("Unable to load endgame tablebase: " + ex.getMessage());
+			}
+		}
+
+		// Opening book, if one has been generated
+		File bookFile = new File(Global.openBookFile);
+		if (bookFile.exists()) {
+			try {
+				book = OpenBook.load(bookFile);
+				addText("Loaded opening book with " + book.size() + " positions");
+			} catch (IOException ex) {
+				addText("Unable to load opening book: " + ex.getMessage());
+			}
+		}
+
 		try {
 			addText("Connecting to localhost:" + KalahaMain.port);
 			socket = new Socket("localhost", KalahaMain.port);
@@ -63,8 +89,7 @@ public class AIClient implements Runnable {
 	public void start() {
 		// Don't change this
 		if (connected) {
-			thr = new Thread(this);
-			thr.start();
+			ConnectionExecutor.execute(this);
 		}
 	}
 
@@ -100,81 +125,73 @@ public class AIClient implements Runnable {
 	}
 
 	/**
-	 * Thread for server communication. Checks when it is this client's turn to make
-	 * a move.
+	 * Thread for server communication. Subscribes to the game events, and
+	 * makes a move each time the server tells that it is this client's turn.
 	 */
 	public void run() {
 		String reply;
 		running = true;
 
 		try {
-			while (running) {
-				// Checks which player you are. No need to change this.
-				if (player == -1) {
-					out.println(Commands.HELLO);
-					reply = in.readLine();
+			// Checks which player you are. No need to change this.
+			out.println(Commands.HELLO);
+			reply = in.readLine();
 
-					String tokens[] = reply.split(" ");
-					player = Integer.parseInt(tokens[1]);
+			String tokens[] = reply.split(" ");
+			player = Integer.parseInt(tokens[1]);
 
-					addText("I am player " + player);
-				}
+			addText("I am player " + player);
 
-				// Check if game has ended. No need to change this.
-				out.println(Commands.WINNER);
+			// From now on the server tells when it is my turn and when the
+			// game has ended, so there is no need to poll. No need to change this.
+			out.println(Commands.SUBSCRIBE);
+
+			// Every line is read here, since the server can send events between a
+			// move and its reply. No need to change this.
+			String currentBoardStr = null;
+			int cMove = 0;
+			String moveText = null;
+			while (running) {
 				reply = in.readLine();
-				if (reply.equals("1") || reply.equals("2")) {
-					int w = Integer.parseInt(reply);
+				if (reply == null) {
+					running = false;
+				} else if (reply.startsWith(Commands.GAME_OVER)) {
+					// Game has ended. No need to change this.
+					int w = Integer.parseInt(reply.substring(Commands.GAME_OVER.length() + 1));
 					if (w == player) {
 						addText("I won!");
+					} else if (w == 0) {
+						addText("Even game!");
 					} else {
 						addText("I lost...");
 					}
 					running = false;
-				}
-				if (reply.equals("0")) {
-					addText("Even game!");
+				} else if (reply.equals(Errors.OPPONENT_LEFT)) {
+					addText("Opponent left, I won!");
 					running = false;
-				}
-
-				// Check if it is my turn. If so, do a move
-				out.println(Commands.NEXT_PLAYER);
-				reply = in.readLine();
-				if (!reply.equals(Errors.GAME_NOT_FULL) && running) {
-					int nextPlayer = Integer.parseInt(reply);
-
-					if (nextPlayer == player) {
-						out.println(Commands.BOARD);
-						String currentBoardStr = in.readLine();
-						boolean validMove = false;
-						while (!validMove) {
-							long startT = System.currentTimeMillis();
-							// This is the call to the function for making a move.
-							// You only need to change the contents in the getMove()
-							// function.
-							GameState currentBoard = new GameState(currentBoardStr);
-							int cMove = getMove(currentBoard);
-
-							// Timer stuff
-							long tot = System.currentTimeMillis() - startT;
-							double e = (double) tot / (double) 1000;
-
-							out.println(Commands.MOVE + " " + cMove + " " + player);
-							reply = in.readLine();
-							if (!reply.startsWith("ERROR")) {
-								validMove = true;
-								addText("Made move " + cMove + " in " + e + " secs");
-							}
-						}
+				} else if (reply.startsWith(Commands.YOUR_TURN)) {
+					// It is my turn, do a move
+					currentBoardStr = reply.substring(Commands.YOUR_TURN.length() + 1);
+					cMove = makeMove(currentBoardStr);
+					moveText = lastMoveText;
+				} else if (reply.startsWith(Commands.SUBSCRIBE)) {
+					// Subscribed
+				} else if (reply.startsWith("ERROR")) {
+					// The move was not accepted, try again
+					if (cMove > 0) {
+						cMove = makeMove(currentBoardStr);
+						moveText = lastMoveText;
 					}
+				} else if (cMove > 0) {
+					// Reply to my move
+					addText(moveText);
+					cMove = 0;
 				}
-
-				// Wait
-				Thread.sleep(100);
 			}
 		} catch (Exception ex) {
 			running = false;
 		}
+		miniMax.shutdown();
 
 		try {
 			socket.close();
@@ -184,185 +201,80 @@ public class AIClient implements Runnable {
 		}
 	}
 
+	// Text to log when the server accepts the move sent by makeMove
+	private String lastMoveText;
+
 	/**
-	 * This is the method that makes a move each time it is your turn. Here you need
-	 * to change the call to the random method to your Minimax search.
+	 * Finds a move for the board and sends it to the server. The reply is read
+	 * by the loop in run(). No need to change this.
 	 * 
-	 * @param currentBoard The current board state
-	 * @return Move to make (1-6)
+	 * @param currentBoardStr Board as sent by the server
+	 * @return The move sent
 	 */
+	private int makeMove(String currentBoardStr) {
+		long startT = System.currentTimeMillis();
+		// This is the call to the function for making a move.
+		// You only need to change the contents in the getMove()
+		// function.
+		GameState currentBoard = new GameState(currentBoardStr);
+		int cMove = getMove(currentBoard);
+
+		// Timer stuff
+		long tot = System.currentTimeMillis() - startT;
+		double e = (double) tot / (double) 1000;
+
+		if (bookMove) {
+			lastMoveText = "Made move " + cMove + " in " + e + " secs (book)";
+		} else if (mcts != null) {
+			lastMoveText = "Made move " + cMove + " in " + e + " secs (" + mcts.getPlayouts()
+					+ " playouts, " + mcts.getPlayoutsPerSecond() + "/s)";
+		} else {
+			lastMoveText = "Made move " + cMove + " in " + e + " secs (depth "
+					+ miniMax.getSearchedDepth() + ", cutoff on first move "
+					+ Math.round(miniMax.getFirstMoveCutoffRate() * 100) + "%)";
+		}
+		out.println(Commands.MOVE + " " + cMove + " " + player);
+		return cMove;
+	}
 
 	// We are aiming for B grade (alpha-beta pruning with time constraint)
 
-	public int max_player = 1; // I have considered first player as maximum player
-	public int min_player = 2;// I have considered second player as minimum player
 	public int maximumTimeForEveryMove = 5; // Maximum time for every move is 5
 
-	public int getMove(GameState currentBoard) {
+	// Positions already searched are kept between the calls to getMove
+	private final ParallelSearch miniMax = new ParallelSearch(Global.searchThreads,
+			new TranspositionTable(Global.TT_SIZE_MB));
 
-		long startTime = System.currentTimeMillis(); // I have assigned current time in milliseconds to
-														// variable(startTime)
-		Utility_Object bestMove = new Utility_Object();// I have initialized the object to compare the best moves in
-														// perticular time(max time)
+	// Monte Carlo tree search, used instead of minimax if selected. The tree
+	// is kept between the calls to getMove
+	private final MonteCarloSearch mcts = Global.engine.equals("mcts")
+			? new MonteCarloSearch(Global.MCTS_NODES, Global.searchThreads) : null;
 
-		if (player == max_player)
-			bestMove.setEval_score(Integer.MIN_VALUE); // to comparision, max player is assigning to -infinity
-		else if (player == min_player)
-			bestMove.setEval_score(Integer.MAX_VALUE);// to comparision, min player is assigning to +infinity
+	// Opening book, or null if there is none
+	private OpenBook book;
+	private boolean bookMove;
 
-		// This loop Iterate till the maximum execution time and returns best move.
-		while (maximumTimeForEveryMove >= ((double) (System.currentTimeMillis() - startTime) / (double) 1000)) {
-
-			Utility_Object uo = miniMaxAlgorithmImplementation(currentBoard.clone(), 6, player, Integer.MIN_VALUE,
-					Integer.MAX_VALUE, startTime);// we are taking 6 as depth
-
-			if (player == max_player && uo.getEval_score() > bestMove.getEval_score()) {
-				bestMove.setEval_score(uo.getEval_score());
-				bestMove.setAmbo_value(uo.getAmbo_value());
-			} // comparision for maximum player since the values are +ve always
-
-			if (player == min_player && uo.getEval_score() < bestMove.getEval_score()) {
-				bestMove.setEval_score(uo.getEval_score());
-				bestMove.setAmbo_value(uo.getAmbo_value());
-			} // comparision for minimum player since the values are -ve always
-
-		}
-		return bestMove.getAmbo_value(); // return the best ambo value after executing for maximum time
-	}
-
-	/*
-	 * The below miniMaxAlgoritmImplementation takes
-	 * 
-	 * @param gs- GameState object
-	 * 
-	 * @param depth- depth for the search
-	 * 
-	 * @param player- current player either Ai is maximizer or minimizer
-	 * 
-	 * @param alpha- alpha value
-	 * 
-	 * @param beta- beta value
-	 * 
-	 * @startTime - system time is sent to function.
-	 * 
-	 * returns the Utility Object which consits of score, best move.
-	 * 
-	 * 
-	 * Algoritm Implementation::::
-	 * 
-	 * function minimax(position,depth,maximizingPlayer,alpha,beta)
-	 * 
-	 * if depth==0 or game over { return the static score }
-	 * 
-	 * if maximizingplayer { maxValue= -Infinity
-	 * 
-	 * for each child of position
-	 * eval=minimax(position,depth-1,maximizingPlayer,alpha,beta)
-	 * maxValue=max(maxValue,eval) alpha=max(alpha,eval)
-	 * 
-	 * if beta<=alpha break return maxValue }
-	 *
-	 * 
-	 * else {minValue= +Infinity for each child of position
-	 * eval=minimax(position,depth-1,maximizingPlayer,alpha,beta)
-	 * minValue=min(minValue,eval) beta=min(beta,eval)
-	 * 
-	 * if beta<=alpha break
+	/**
+	 * This is the method that makes a move each time it is your turn. It runs the
+	 * iterative deepening minimax search, on Global.searchThreads threads, until
+	 * the time for the move is up, or the Monte Carlo tree search if selected
+	 * with -engine mcts. Positions in the opening book are not searched.
 	 * 
-	 * return minValue }
+	 * @param currentBoard The current board state
+	 * @return Move to make (1-6)
 	 */
-
-	public Utility_Object miniMaxAlgorithmImplementation(GameState gs, int depth, int player, int alpha, int beta,
-			long startTime) {
-
-		// int nextPlayer = gs.getNextPlayer();
-
-		int bestPossibleMove = 1;
-
-		if (gs.gameEnded() || depth == 0
-				|| maximumTimeForEveryMove <= ((double) (System.currentTimeMillis() - startTime) / (double) 1000)) {
-
-			Utility_Object uo = new Utility_Object();
-
-			uo.setEval_score((player == max_player) ? gs.getScore(max_player) - gs.getScore(min_player)
-					: gs.getScore(min_player) - gs.getScore(max_player));
-
-			return uo;
-		}
-
-		if (player == max_player) {
-
-			int max_value = Integer.MIN_VALUE;
-
-			int z = 1;
-
-			while (z < 7) {
-
-				if (gs.moveIsPossible(z)) {
-
-					GameState gameState = gs.clone();
-					gameState.makeMove(z);
-					int nextPlayer = gameState.getNextPlayer();
-
-					Utility_Object uo = miniMaxAlgorithmImplementation(gameState, depth - 1, nextPlayer, alpha, beta,
-							startTime);
-
-					// max_value=Math.max(uo.eval,max_value);
-
-					if (uo.getEval_score() > max_value) {
-						max_value = uo.getEval_score();
-						bestPossibleMove = z;
-					}
-
-					if (uo.getEval_score() > alpha) {
-						alpha = uo.getEval_score();
-					}
-
-					if (beta <= alpha)
-						break;
-
-				}
-				z++;
-			}
-
-			return new Utility_Object(max_value, bestPossibleMove);
-
-		} else {
-
-			int min_value = Integer.MAX_VALUE;
-
-			int z = 1;
-
-			while (z < 7) {
-				if (gs.moveIsPossible(z)) {
-
-					GameState gameState = gs.clone();
-					gameState.makeMove(z);
-					int nextPlayer = gameState.getNextPlayer();
-					Utility_Object uo = miniMaxAlgorithmImplementation(gameState, depth - 1, nextPlayer, alpha, beta,
-							startTime);
-
-					// min_value=Math.min(uo.eval,min_value);
-
-					if (uo.getEval_score() < min_value) {
-						min_value = uo.getEval_score();
-						bestPossibleMove = z;
-					}
-
-					if (uo.getEval_score() < beta) {
-						beta = uo.getEval_score();
-					}
-
-					if (beta <= alpha)
-						break;
-
-				}
-				z++;
+	public int getMove(GameState currentBoard) {
+		if (book != null) {
+			int move = book.getMove(currentBoard);
+			bookMove = move != 0 && currentBoard.moveIsPossible(move);
+			if (bookMove) {
+				return move;
 			}
-
-			return new Utility_Object(min_value, bestPossibleMove);
 		}
-
+		if (mcts != null) {
+			return mcts.findBestMove(currentBoard, maximumTimeForEveryMove * 1000L);
+		}
+		return miniMax.findBestMove(currentBoard, maximumTimeForEveryMove * 1000L);
 	}
 
 	/**
@@ -0,0 +1,221 @@
+package ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import kalaha.Board;
+
+/**
+ * Exact values of all endgame positions with at most maxSeeds seeds left in
+ * the ambos, read from a file made by EndgameTablebaseGenerator.
+ *
+ * The value of a position is the best difference in seeds that the player
+ * to move can add to the houses from now on, so the final score difference
+ * is the value plus the current difference in the houses. The seeds already
+ * in the houses do not matter for the rest of the game, and the rules are
+ * the same for both players, so a position is only given by the ambos, seen
+ * from the player to move: the 6 own ambos followed by the 6 opponent ambos.
+ *
+ * Positions are numbered by the total number of seeds, and within the same
+ * total by the combinatorial number system for distributing the seeds over
+ * 12 ambos. Every position gets a unique index with no gaps, so the file
+ * holds one signed byte per position and nothing else.
+ *
+ * The file is memory mapped, so loading it is instant and it is never
+ * copied to the heap. It can be shared by several search threads.
+ *
+ * File format: magic number (int), maxSeeds (int), values (bytes).
+ */
+public final class EndgameTablebase
+{
+    /**
+     * Returned by probe() for positions not in the tablebase.
+     */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    /**
+     * Largest maxSeeds that can be indexed by an int.
+     */
+    public static final int MAX_SEEDS = 24;
+
+    static final int MAGIC = 0x4B544231;
+    static final int HEADER_SIZE = 8;
+
+    //Binomial coefficients, BINOMIAL[n][k] = n over k, for k up to 12
+    private static final long[][] BINOMIAL = new long[MAX_SEEDS + 14][13];
+
+    static
+    {
+        for (int n = 0; n < BINOMIAL.length; n++)
+        {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, 12); k++)
+            {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k <= n - 1 ? BINOMIAL[n - 1][k] : 0);
+            }
+        }
+    }
+
+    private final MappedByteBuffer values;
+    private final int maxSeeds;
+
+    private EndgameTablebase(MappedByteBuffer values, int maxSeeds)
+    {
+        this.values = values;
+        this.maxSeeds = maxSeeds;
+    }
+
+    /**
+     * Maps a tablebase file into memory.
+     *
+     * @param file Tablebase file
+     * @return The tablebase
+     * @throws IOException If the file can not be read or is not a tablebase
+     */
+    public static EndgameTablebase load(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC)
+            {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+            int maxSeeds = buf.getInt(4);
+            if (maxSeeds < 0 || maxSeeds > MAX_SEEDS || buf.capacity() != HEADER_SIZE + size(maxSeeds))
+            {
+                throw new IOException("Broken tablebase file: " + file);
+            }
+            return new EndgameTablebase(buf, maxSeeds);
+        }
+        finally
+        {
+            //The mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the largest number of seeds in the ambos covered by the tablebase.
+     *
+     * @return Max seeds
+     */
+    public int getMaxSeeds()
+    {
+        return maxSeeds;
+    }
+
+    /**
+     * Looks up the exact final score difference of a position.
+     *
+     * @param board Position that has not ended
+     * @return Final score difference seen from the player to move, or NO_VALUE
+     * if there are too many seeds left
+     */
+    public int probe(Board board)
+    {
+        int seeds = board.getAmboSeeds();
+        if (seeds > maxSeeds) return NO_VALUE;
+
+        int player = board.getNextPlayer();
+        int value = values.get(HEADER_SIZE + (int)index(board, seeds));
+        return value + board.getScore(player) - board.getScore(3 - player);
+    }
+
+    /**
+     * Returns the number of positions with at most maxSeeds seeds in the
+     * ambos.
+     *
+     * @param maxSeeds Max seeds
+     * @return Number of positions
+     */
+    static long size(int maxSeeds)
+    {
+        return offset(maxSeeds + 1);
+    }
+
+    /**
+     * Returns the index of the first position with a number of seeds in the
+     * ambos. There are 11 + n over 11 ways to put n seeds in 12 ambos, and
+     * the sum of those for all totals below seeds is 11 + seeds over 12.
+     *
+     * @param seeds Seeds in the ambos
+     * @return Index of the first position
+     */
+    static long offset(int seeds)
+    {
+        return BINOMIAL[seeds + 11][12];
+    }
+
+    /**
+     * Returns the index of a position, seen from the player to move.
+     *
+     * @param board Position
+     * @param seeds Seeds in the ambos of the position
+     * @return Index of the position
+     */
+    static long index(Board board, int seeds)
+    {
+        int first = board.getNextPlayer() == 1 ? 1 : 8;
+        long index = offset(seeds);
+        int left = seeds;
+        for (int i = 0; i < 11; i++)
+        {
+            //Positions with fewer seeds in this ambo come first: the number
+            //of ways to put the seeds left over the remaining k ambos, for all
+            //smaller values of this ambo, which sums to a difference of two
+            //binomial coefficients
+            int a = board.get(ambo(first, i));
+            int k = 11 - i;
+            index += BINOMIAL[left + k][k] - BINOMIAL[left - a + k][k];
+            left -= a;
+        }
+        return index;
+    }
+
+    /**
+     * Sets up the ambos of a position from its index, as the inverse of index().
+     *
+     * @param index Index of the position
+     * @param seeds Seeds in the ambos of the position
+     * @param ambos Receives the 6 own and 6 opponent ambos
+     */
+    static void unrank(long index, int seeds, int[] ambos)
+    {
+        long rank = index - offset(seeds);
+        int left = seeds;
+        for (int i = 0; i < 11; i++)
+        {
+            int k = 11 - i;
+            int a = 0;
+            while (true)
+            {
+                //Number of positions with this value in ambo i
+                long cnt = BINOMIAL[left - a + k - 1][k - 1];
+                if (rank < cnt) break;
+                rank -= cnt;
+                a++;
+            }
+            ambos[i] = a;
+            left -= a;
+        }
+        ambos[11] = left;
+    }
+
+    /**
+     * Returns the board position of an ambo in the order used by the index.
+     *
+     * @param first Board position of the first own ambo
+     * @param i Ambo number, 0-5 for own ambos and 6-11 for opponent ambos
+     * @return Board position
+     */
+    private static int ambo(int first, int i)
+    {
+        int pos = first + i + (i >= 6 ? 1 : 0);
+        return pos >= 14 ? pos - 14 : pos;
+    }
+}
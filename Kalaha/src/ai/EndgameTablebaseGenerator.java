@@ -0,0 +1,230 @@
+package ai;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import kalaha.Board;
+
+/**
+ * Generates the endgame tablebase file read by EndgameTablebase.
+ *
+ * Seeds only leave the ambos, so the positions are solved backwards from the
+ * end of the game: first all positions with 0 seeds in the ambos, then all
+ * with 1 seed, and so on. A move that puts a seed in a house leads to a
+ * position with fewer seeds, which is already solved. A move that does not
+ * leads to a position with the same number of seeds, but with the seeds
+ * further ahead on the board, so there are no cycles. Each layer is swept
+ * in parallel until every position is solved, and a sweep only solves the
+ * positions whose moves all lead to solved positions.
+ *
+ * Usage: java ai.EndgameTablebaseGenerator [maxSeeds] [file] [threads]
+ */
+public class EndgameTablebaseGenerator
+{
+    //Value of a position that is not solved yet
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+
+    //Number of positions solved by one task
+    private static final int TASK_SIZE = 4096;
+
+    private final byte[] values;
+
+    //Board and ambo array for each thread
+    private final ThreadLocal<Board> boards = new ThreadLocal<Board>()
+    {
+        @Override
+        protected Board initialValue()
+        {
+            return new Board();
+        }
+    };
+    private final ThreadLocal<int[]> ambos = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[14];
+        }
+    };
+
+    /**
+     * Generates a tablebase file.
+     *
+     * @param args Max seeds in the ambos, file name and number of threads
+     * @throws IOException If the file can not be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int maxSeeds = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        String file = args.length > 1 ? args[1] : Global.tablebaseFile;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        if (maxSeeds < 0 || maxSeeds > EndgameTablebase.MAX_SEEDS)
+        {
+            System.out.println("Max seeds must be 0-" + EndgameTablebase.MAX_SEEDS);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        EndgameTablebaseGenerator generator = new EndgameTablebaseGenerator(maxSeeds);
+        generator.generate(maxSeeds, new ForkJoinPool(threads));
+        generator.write(file, maxSeeds);
+        System.out.println("Wrote " + generator.values.length + " positions to " + file + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private EndgameTablebaseGenerator(int maxSeeds)
+    {
+        values = new byte[(int)EndgameTablebase.size(maxSeeds)];
+        Arrays.fill(values, UNKNOWN);
+    }
+
+    /**
+     * Solves all layers, from the fewest seeds.
+     *
+     * @param maxSeeds Max seeds in the ambos
+     * @param pool Pool running the sweeps
+     */
+    private void generate(int maxSeeds, ForkJoinPool pool)
+    {
+        for (int seeds = 0; seeds <= maxSeeds; seeds++)
+        {
+            int from = (int)EndgameTablebase.offset(seeds);
+            int to = (int)EndgameTablebase.offset(seeds + 1);
+            long unknown = to - from;
+            int sweeps = 0;
+            while (unknown > 0)
+            {
+                long left = pool.invoke(new Sweep(seeds, from, to));
+                if (left == unknown)
+                {
+                    throw new IllegalStateException("No progress in layer " + seeds);
+                }
+                unknown = left;
+                sweeps++;
+            }
+            System.out.println("Seeds " + seeds + ": " + (to - from) + " positions, " + sweeps + " sweeps");
+        }
+    }
+
+    /**
+     * Solves the unsolved positions in a range of a layer, if possible.
+     */
+    private class Sweep extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int seeds;
+        private final int from;
+        private final int to;
+
+        Sweep(int seeds, int from, int to)
+        {
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (to - from > TASK_SIZE)
+            {
+                int mid = (from + to) >>> 1;
+                Sweep left = new Sweep(seeds, from, mid);
+                left.fork();
+                long right = new Sweep(seeds, mid, to).compute();
+                return left.join() + right;
+            }
+
+            long unknown = 0;
+            for (int i = from; i < to; i++)
+            {
+                if (values[i] == UNKNOWN)
+                {
+                    values[i] = solve(i, seeds);
+                    if (values[i] == UNKNOWN) unknown++;
+                }
+            }
+            return unknown;
+        }
+    }
+
+    /**
+     * Solves a position from the values of the positions after each move.
+     * Values written by other threads in the same sweep may not be seen yet,
+     * which only means the position is solved in a later sweep.
+     *
+     * @param index Index of the position
+     * @param seeds Seeds in the ambos
+     * @return Value of the position, or UNKNOWN if a move leads to an unsolved
+     * position
+     */
+    private byte solve(int index, int seeds)
+    {
+        int[] pits = ambos.get();
+        EndgameTablebase.unrank(index, seeds, pits);
+        //Own ambos 1-6, opponent ambos 8-13 and empty houses
+        System.arraycopy(pits, 6, pits, 8, 6);
+        System.arraycopy(pits, 0, pits, 1, 6);
+        pits[0] = 0;
+        pits[7] = 0;
+
+        Board board = boards.get();
+        board.set(pits, 1);
+        if (board.gameEnded())
+        {
+            return (byte)(board.getScore(1) - board.getScore(2));
+        }
+
+        int best = Integer.MIN_VALUE;
+        for (int z = 1; z <= 6; z++)
+        {
+            if (!board.moveIsPossible(z)) continue;
+
+            board.makeMove(z);
+            int value = board.getScore(1) - board.getScore(2);
+            if (!board.gameEnded())
+            {
+                int left = board.getAmboSeeds();
+                byte next = values[(int)EndgameTablebase.index(board, left)];
+                if (next == UNKNOWN)
+                {
+                    board.unmakeMove();
+                    return UNKNOWN;
+                }
+                value += board.getNextPlayer() == 1 ? next : -next;
+            }
+            board.unmakeMove();
+
+            if (value > best) best = value;
+        }
+        return (byte)best;
+    }
+
+    /**
+     * Writes the tablebase file.
+     *
+     * @param file File name
+     * @param maxSeeds Max seeds in the ambos
+     * @throws IOException If the file can not be written
+     */
+    private void write(String file, int maxSeeds) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try
+        {
+            out.writeInt(EndgameTablebase.MAGIC);
+            out.writeInt(maxSeeds);
+            out.write(values);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ai;
+
+import kalaha.Board;
+
+/**
+ * Static evaluation of a board, used by the search at the horizon and in
+ * ended games. Implementations must not keep any state, since one
+ * evaluator is shared by all search threads.
+ */
+public interface Evaluator
+{
+    /**
+     * Evaluates a board. For an ended game the score must be the
+     * difference in the houses, since that is the final result.
+     *
+     * @param board Board to evaluate
+     * @return Score in seeds, seen from the player to move
+     */
+    int evaluate(Board board);
+}
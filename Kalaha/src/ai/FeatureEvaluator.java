@@ -0,0 +1,78 @@
+package ai;
+
+import kalaha.Board;
+
+/**
+ * Evaluates a board by a weighted sum of features, all seen from the player
+ * to move as the difference between the players:
+ *
+ * - Seeds in the houses
+ * - Seeds in the ambos, which tend to end in the own house
+ * - Mobility, the number of legal moves
+ * - Capture threats, the largest capture available
+ * - Extra turns available
+ *
+ * Mobility and extra turns are read from the packed words of the Board
+ * with a few bit operations (see Board.getMobility() and
+ * Board.getExtraTurns()), but the largest capture is found by a loop over
+ * the six ambos of each player. An evaluation therefore costs a few times
+ * more than the house difference, so the house difference is still the
+ * default, and this evaluator is chosen with -eval features. The weights
+ * are in sixteenths of a seed, and the house difference always counts in
+ * full, so an ended game, where all other features are 0, gets its exact
+ * score.
+ */
+public class FeatureEvaluator implements Evaluator
+{
+    //Number of weight units per seed
+    private static final int SCALE_BITS = 4;
+
+    private final int sideWeight;
+    private final int mobilityWeight;
+    private final int captureWeight;
+    private final int extraTurnWeight;
+
+    /**
+     * Creates an evaluator with the default weights.
+     */
+    public FeatureEvaluator()
+    {
+        this(2, 2, 8, 6);
+    }
+
+    /**
+     * Creates an evaluator with custom weights, in sixteenths of a seed.
+     *
+     * @param sideWeight Weight per seed in the ambos
+     * @param mobilityWeight Weight per legal move
+     * @param captureWeight Weight per seed in the largest capture
+     * @param extraTurnWeight Weight per move giving an extra turn
+     */
+    public FeatureEvaluator(int sideWeight, int mobilityWeight, int captureWeight, int extraTurnWeight)
+    {
+        this.sideWeight = sideWeight;
+        this.mobilityWeight = mobilityWeight;
+        this.captureWeight = captureWeight;
+        this.extraTurnWeight = extraTurnWeight;
+    }
+
+    /**
+     * Evaluates a board.
+     *
+     * @param board Board to evaluate
+     * @return Score in seeds, seen from the player to move
+     */
+    public int evaluate(Board board)
+    {
+        int player = board.getNextPlayer();
+        int opponent = 3 - player;
+        int score = board.getScore(player) - board.getScore(opponent);
+        if (board.gameEnded()) return score;
+
+        int features = sideWeight * (board.getAmboSeeds(player) - board.getAmboSeeds(opponent))
+                + mobilityWeight * (board.getMobility(player) - board.getMobility(opponent))
+                + captureWeight * (board.getLargestCapture(player) - board.getLargestCapture(opponent))
+                + extraTurnWeight * (board.getExtraTurns(player) - board.getExtraTurns(opponent));
+        return score + (features >> SCALE_BITS);
+    }
+}
@@ -8,6 +8,46 @@ package ai;
  */
 public class Global 
 {
+    /**
+     * Memory size of the transposition table in megabytes.
+     */
+    public static final int TT_SIZE_MB = 64;
+    
+    /**
+     * Number of nodes in the Monte Carlo search tree.
+     */
+    public static final int MCTS_NODES = 1 << 20;
+    
+    /**
+     * Search used by the AI: "minimax" or "mcts". Set with the -engine
+     * command line option.
+     */
+    public static String engine = "minimax";
+    
+    /**
+     * Number of threads used by the AI search. Set with the
+     * -threads command line option.
+     */
+    public static int searchThreads = 1;
+    
+    /**
+     * Endgame tablebase file used by the AI search, if it exists. Set with
+     * the -tablebase command line option.
+     */
+    public static String tablebaseFile = "kalaha.tb";
+    
+    /**
+     * Opening book file used by the AI, if it exists. Set with the
+     * -book command line option.
+     */
+    public static String openBookFile = "kalaha.book";
+    
+    /**
+     * Static evaluation used by the AI search. Set with the -eval
+     * command line option.
+     */
+    public static Evaluator evaluator = new StoreDifferenceEvaluator();
+    
     private static boolean firstTaken = false;
     
     /**
@@ -0,0 +1,651 @@
+package ai;
+
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Minimax search with alpha-beta pruning and iterative deepening, used by
+ * the AI client.
+ *
+ * The search works on a single packed Board, making and taking back moves
+ * in place. Results are returned as packed ints holding both the score and
+ * the best move, and the principal variation is kept in a preallocated
+ * triangular array, so no objects are created per node.
+ *
+ * Scores are seen from the player to move. A move that gives an extra turn
+ * keeps the same player to move, so its score is not negated.
+ */
+public class MiniMax
+{
+    /**
+     * Deepest iteration of the iterative deepening.
+     */
+    public static final int MAX_DEPTH = 64;
+
+    /**
+     * Score larger than any real score.
+     */
+    public static final int INF = 1000;
+
+    //Maximum distance from the root
+    private static final int MAX_PLY = MAX_DEPTH + 1;
+
+    //Number of low bits of a packed result holding the move
+    private static final int MOVE_BITS = 3;
+
+    //Maximum number of moves followed by the quiescence search
+    private static final int MAX_QUIESCENCE_PLY = 12;
+
+    //Half width of the first aspiration window, in seeds
+    private static final int ASPIRATION_WINDOW = 2;
+
+    private final TranspositionTable transpositionTable;
+    private EndgameTablebase tablebase;
+    private Evaluator evaluator = new StoreDifferenceEvaluator();
+    private final Board board = new Board();
+
+    //Triangular principal variation array. Row p holds the best line found
+    //from ply p, in columns p to pvLength[p] - 1.
+    private final int[] pv = new int[MAX_PLY * MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    //Principal variation of the last completed iteration, with the position
+    //hash before each move
+    private final int[] prevPv = new int[MAX_PLY];
+    private final long[] prevPvHashes = new long[MAX_PLY];
+    private int prevPvLength;
+
+    private final MoveOrderer moveOrderer = new MoveOrderer(MAX_PLY);
+    private final TimeManager timeManager;
+    private boolean timeIsUp;
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private int searchedDepth;
+    private int bestScore;
+    private boolean principalVariationSearch = true;
+    private boolean quiescence = true;
+
+    /**
+     * Creates a new search.
+     *
+     * @param transpositionTable Table of already searched positions, kept between searches
+     */
+    public MiniMax(TranspositionTable transpositionTable)
+    {
+        this(transpositionTable, new TimeManager());
+    }
+
+    /**
+     * Creates a new search that shares its clock with other searches. Used
+     * by ParallelSearch, where all threads stop at the same time.
+     *
+     * @param transpositionTable Table of already searched positions, kept between searches
+     * @param timeManager Clock for the search
+     */
+    public MiniMax(TranspositionTable transpositionTable, TimeManager timeManager)
+    {
+        this.transpositionTable = transpositionTable;
+        this.timeManager = timeManager;
+    }
+
+    /**
+     * Finds the best move within a time limit.
+     *
+     * @param state Current game state
+     * @param maxTimeMillis Time limit in milliseconds
+     * @return Best move (1-6), or 0 if there is no legal move
+     */
+    public int findBestMove(GameState state, long maxTimeMillis)
+    {
+        return findBestMove(state.toBoard(), MAX_DEPTH, maxTimeMillis);
+    }
+
+    /**
+     * Finds the best move with iterative deepening: searches depth 1, 2, 3, ...
+     * until the maximum depth is reached or the time is up. Each iteration
+     * tries the principal variation of the previous one first. An iteration
+     * cut short by the time limit is discarded, and no new iteration is
+     * started after the soft time limit.
+     *
+     * No search is made if there is only one legal move, and the search
+     * stops after the first iteration if the winner is already decided.
+     *
+     * @param root Position to search
+     * @param maxDepth Deepest iteration to search
+     * @param maxTimeMillis Time limit in milliseconds
+     * @return Best move (1-6) of the last completed iteration, or 0 if
+     * there is no legal move
+     */
+    public int findBestMove(Board root, int maxDepth, long maxTimeMillis)
+    {
+        timeManager.start(maxTimeMillis);
+        transpositionTable.newSearch();
+        return search(root, 1, maxDepth);
+    }
+
+    /**
+     * Runs the iterative deepening search on an already started clock.
+     *
+     * @param root Position to search
+     * @param startDepth First iteration to search
+     * @param maxDepth Deepest iteration to search
+     * @return Best move (1-6) of the last completed iteration, or 0 if
+     * there is no legal move
+     */
+    public int search(Board root, int startDepth, int maxDepth)
+    {
+        reset(root);
+
+        //Fallback in case not even depth 1 completes
+        int bestMove = 1;
+        while (bestMove <= 6 && !board.moveIsPossible(bestMove)) bestMove++;
+        if (bestMove > 6) return 0;
+
+        if (countMoves() == 1) return bestMove;
+        boolean decided = isDecided();
+
+        for (int depth = startDepth; depth <= Math.min(maxDepth, MAX_DEPTH); depth++)
+        {
+            int result = searchRoot(depth);
+            if (timeIsUp) break;
+
+            bestMove = move(result);
+            bestScore = score(result);
+            searchedDepth = depth;
+            savePrincipalVariation(bestMove);
+
+            if (decided || timeManager.softLimitReached()) break;
+        }
+        return bestMove;
+    }
+
+    /**
+     * Prepares a search of a position without a time limit, so that
+     * miniMaxAlgorithmImplementation() can be called directly for a fixed
+     * depth, without iterative deepening. The move ordering history is
+     * cleared, so a search does the same work each time if the
+     * transposition table is cleared as well.
+     *
+     * @param root Position to search
+     */
+    public void prepare(Board root)
+    {
+        timeManager.start(Long.MAX_VALUE);
+        transpositionTable.newSearch();
+        reset(root);
+        moveOrderer.clear();
+    }
+
+    /**
+     * Resets the counters and the search board for a new search.
+     *
+     * @param root Position to search
+     */
+    private void reset(Board root)
+    {
+        timeIsUp = false;
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        searchedDepth = 0;
+        prevPvLength = 0;
+        moveOrderer.newSearch();
+        board.copyFrom(root);
+    }
+
+    /**
+     * Searches the root to a depth. With principal variation search on, the
+     * search starts with an aspiration window around the score of the previous
+     * iteration, and widens the window on the failing side until the score is
+     * inside it.
+     *
+     * @param depth Depth of the iteration
+     * @return Packed score and best move
+     */
+    private int searchRoot(int depth)
+    {
+        if (!principalVariationSearch || searchedDepth < 3)
+        {
+            return miniMaxAlgorithmImplementation(depth, -INF, INF);
+        }
+
+        int delta = ASPIRATION_WINDOW;
+        int alpha = bestScore - delta;
+        int beta = bestScore + delta;
+        while (true)
+        {
+            int result = miniMaxAlgorithmImplementation(depth, alpha, beta);
+            int value = score(result);
+            if (timeIsUp || (value > alpha && value < beta))
+            {
+                return result;
+            }
+
+            delta *= 2;
+            if (value <= alpha)
+            {
+                alpha = Math.max(value - delta, -INF);
+            }
+            else
+            {
+                beta = Math.min(value + delta, INF);
+            }
+        }
+    }
+
+    /**
+     * Alpha-beta search of the current board. With principal variation search
+     * on, only the first move is searched with the full window. The other moves
+     * are first searched with a null window, to prove that they are not better,
+     * and searched again with the full window if that fails.
+     *
+     * @param depth Remaining depth
+     * @param alpha Lower bound of the search window
+     * @param beta Upper bound of the search window
+     * @return Packed score and best move, see score() and move()
+     */
+    public int miniMaxAlgorithmImplementation(int depth, int alpha, int beta)
+    {
+        int ply = board.getPly();
+        pvLength[ply] = ply;
+        nodes++;
+
+        if (TimeManager.shouldCheck(nodes) && timeManager.hardLimitReached())
+        {
+            timeIsUp = true;
+        }
+        if (timeIsUp) return 0;
+
+        if (board.gameEnded() || ply >= MAX_DEPTH)
+        {
+            return pack(evaluate(), 0);
+        }
+        if (ply > 0 && tablebase != null)
+        {
+            //Exact value of an endgame position
+            int value = tablebase.probe(board);
+            if (value != EndgameTablebase.NO_VALUE) return pack(value, 0);
+        }
+        if (depth == 0)
+        {
+            return quiescence ? pack(quiescenceSearch(alpha, beta, MAX_QUIESCENCE_PLY), 0) : pack(evaluate(), 0);
+        }
+
+        //Transposition table lookup: cutoff on a deep enough entry,
+        //otherwise try its best move first
+        long hash = board.getHash();
+        long entry = transpositionTable.probe(hash);
+        int ttMove = TranspositionTable.move(entry);
+        if (entry != 0 && TranspositionTable.depth(entry) >= depth)
+        {
+            int ttScore = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && ttScore >= beta)
+                    || (bound == TranspositionTable.UPPER && ttScore <= alpha))
+            {
+                return pack(ttScore, ttMove);
+            }
+        }
+
+        //Principal variation move of the previous iteration, if this node is on it
+        int pvMove = (ply < prevPvLength && prevPvHashes[ply] == hash) ? prevPv[ply] : 0;
+
+        int player = board.getNextPlayer();
+        int alphaAtStart = alpha;
+        int bestValue = -INF;
+        int bestMove = 0;
+
+        int moveCount = moveOrderer.generate(board, ply, pvMove, ttMove);
+        for (int i = 0; i < moveCount; i++)
+        {
+            int z = moveOrderer.getMove(ply, i);
+
+            board.makeMove(z);
+            boolean extraTurn = board.getNextPlayer() == player;
+            int value;
+            if (i == 0 || !principalVariationSearch)
+            {
+                value = searchChild(depth - 1, alpha, beta, extraTurn);
+            }
+            else
+            {
+                value = searchChild(depth - 1, alpha, alpha + 1, extraTurn);
+                if (value > alpha && value < beta && !timeIsUp)
+                {
+                    value = searchChild(depth - 1, alpha, beta, extraTurn);
+                }
+            }
+            board.unmakeMove();
+
+            if (timeIsUp) return 0;
+
+            if (value > bestValue)
+            {
+                bestValue = value;
+                bestMove = z;
+                if (value > alpha)
+                {
+                    alpha = value;
+                    updatePrincipalVariation(ply, z);
+                }
+            }
+            if (alpha >= beta)
+            {
+                cutoffs++;
+                if (i == 0) firstMoveCutoffs++;
+                moveOrderer.cutoff(ply, i, player, depth);
+                break;
+            }
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if (bestValue <= alphaAtStart) bound = TranspositionTable.UPPER;
+        else if (bestValue >= beta) bound = TranspositionTable.LOWER;
+        transpositionTable.store(hash, depth, bound, bestValue, bestMove);
+
+        return pack(bestValue, bestMove);
+    }
+
+    /**
+     * Quiescence search at the horizon. Only moves that give an extra turn or
+     * capture seeds are followed, since stopping in the middle of those gives
+     * a misleading score. The player to move can also stand pat, i.e. accept
+     * the static score, so a position where that is already good enough is
+     * cut off at once.
+     *
+     * @param alpha Lower bound of the search window
+     * @param beta Upper bound of the search window
+     * @param qPly Number of moves left to follow
+     * @return Score seen from the player to move
+     */
+    private int quiescenceSearch(int alpha, int beta, int qPly)
+    {
+        int ply = board.getPly();
+        pvLength[ply] = ply;
+
+        int standPat = evaluate();
+        if (board.gameEnded() || qPly == 0 || ply >= MAX_DEPTH || standPat >= beta)
+        {
+            return standPat;
+        }
+        if (tablebase != null)
+        {
+            int value = tablebase.probe(board);
+            if (value != EndgameTablebase.NO_VALUE) return value;
+        }
+        if (standPat > alpha) alpha = standPat;
+
+        int player = board.getNextPlayer();
+        int bestValue = standPat;
+        int moveCount = moveOrderer.generateNoisy(board, ply);
+        for (int i = 0; i < moveCount; i++)
+        {
+            int z = moveOrderer.getMove(ply, i);
+
+            nodes++;
+            if (TimeManager.shouldCheck(nodes) && timeManager.hardLimitReached())
+            {
+                timeIsUp = true;
+            }
+            if (timeIsUp) return 0;
+
+            board.makeMove(z);
+            int value;
+            if (board.getNextPlayer() == player)
+            {
+                value = quiescenceSearch(alpha, beta, qPly - 1);
+            }
+            else
+            {
+                value = -quiescenceSearch(-beta, -alpha, qPly - 1);
+            }
+            board.unmakeMove();
+
+            if (value > bestValue)
+            {
+                bestValue = value;
+                if (value > alpha) alpha = value;
+            }
+            if (alpha >= beta) break;
+        }
+        return bestValue;
+    }
+
+    /**
+     * Searches the position after a move.
+     *
+     * @param depth Remaining depth
+     * @param alpha Lower bound of the search window, seen from the player that moved
+     * @param beta Upper bound of the search window, seen from the player that moved
+     * @param extraTurn True if the player that moved is to move again
+     * @return Score seen from the player that moved
+     */
+    private int searchChild(int depth, int alpha, int beta, boolean extraTurn)
+    {
+        if (extraTurn)
+        {
+            return score(miniMaxAlgorithmImplementation(depth, alpha, beta));
+        }
+        return -score(miniMaxAlgorithmImplementation(depth, -beta, -alpha));
+    }
+
+    /**
+     * Static evaluation of the current board.
+     *
+     * @return Score seen from the player to move
+     */
+    private int evaluate()
+    {
+        return evaluator.evaluate(board);
+    }
+
+    /**
+     * Returns the number of legal moves on the current board.
+     *
+     * @return Number of legal moves
+     */
+    private int countMoves()
+    {
+        int cnt = 0;
+        for (int z = 1; z <= 6; z++)
+        {
+            if (board.moveIsPossible(z)) cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * Checks if the winner is already decided, i.e. one player has more
+     * than half of all seeds in the house.
+     *
+     * @return True if no move can change the winner
+     */
+    private boolean isDecided()
+    {
+        int total = board.getScore(1) + board.getScore(2) + board.getAmboSeeds();
+        return board.getScore(1) * 2 > total || board.getScore(2) * 2 > total;
+    }
+
+    /**
+     * Sets the principal variation from a ply to a move followed by the
+     * principal variation of the next ply.
+     *
+     * @param ply Distance from the root
+     * @param move Best move at this ply
+     */
+    private void updatePrincipalVariation(int ply, int move)
+    {
+        int row = ply * MAX_PLY;
+        int next = (ply + 1) * MAX_PLY;
+        pv[row + ply] = move;
+        for (int j = ply + 1; j < pvLength[ply + 1]; j++)
+        {
+            pv[row + j] = pv[next + j];
+        }
+        pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+    }
+
+    /**
+     * Saves the principal variation of a completed iteration, with the
+     * position hash before each move, for ordering the next iteration.
+     *
+     * @param bestMove Best root move of the iteration
+     */
+    private void savePrincipalVariation(int bestMove)
+    {
+        //A transposition table cutoff at the root leaves no line
+        if (pvLength[0] == 0)
+        {
+            pv[0] = bestMove;
+            pvLength[0] = 1;
+        }
+
+        prevPvLength = 0;
+        while (prevPvLength < pvLength[0] && board.moveIsPossible(pv[prevPvLength]))
+        {
+            prevPv[prevPvLength] = pv[prevPvLength];
+            prevPvHashes[prevPvLength] = board.getHash();
+            board.makeMove(pv[prevPvLength]);
+            prevPvLength++;
+            if (board.gameEnded()) break;
+        }
+        for (int i = 0; i < prevPvLength; i++)
+        {
+            board.unmakeMove();
+        }
+    }
+
+    /**
+     * Packs a score and a move into a search result.
+     *
+     * @param score Score
+     * @param move Move (0-6)
+     * @return Packed result
+     */
+    public static int pack(int score, int move)
+    {
+        return (score << MOVE_BITS) | move;
+    }
+
+    /**
+     * Returns the score of a packed search result.
+     *
+     * @param result Packed result
+     * @return Score
+     */
+    public static int score(int result)
+    {
+        return result >> MOVE_BITS;
+    }
+
+    /**
+     * Returns the move of a packed search result.
+     *
+     * @param result Packed result
+     * @return Move (1-6), or 0 for a leaf
+     */
+    public static int move(int result)
+    {
+        return result & ((1 << MOVE_BITS) - 1);
+    }
+
+    /**
+     * Returns the number of nodes searched by the last call to findBestMove().
+     *
+     * @return Node count
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Returns the share of beta cutoffs in the last call to findBestMove()
+     * that were caused by the first move tried, which shows how well the
+     * moves are ordered.
+     *
+     * @return Cutoff on first move rate (0-1)
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return cutoffs == 0 ? 0 : (double)firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Turns move ordering by move type, killers and history on or off, for
+     * comparing node counts.
+     *
+     * @param enabled True to order all moves
+     */
+    public void setMoveOrdering(boolean enabled)
+    {
+        moveOrderer.setEnabled(enabled);
+    }
+
+    /**
+     * Turns principal variation search and aspiration windows on or off. When
+     * off, every node is searched with plain alpha-beta and every iteration
+     * starts with the full window, for comparing node counts.
+     *
+     * @param enabled True to use principal variation search
+     */
+    public void setPrincipalVariationSearch(boolean enabled)
+    {
+        principalVariationSearch = enabled;
+    }
+
+    /**
+     * Turns the quiescence search at the horizon on or off. When off, the
+     * static score is used at depth 0.
+     *
+     * @param enabled True to use quiescence search
+     */
+    public void setQuiescence(boolean enabled)
+    {
+        quiescence = enabled;
+    }
+
+    /**
+     * Sets the endgame tablebase used for exact values of positions with few
+     * seeds left in the ambos.
+     *
+     * @param tablebase The tablebase, or null to search all positions
+     */
+    public void setTablebase(EndgameTablebase tablebase)
+    {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Sets the static evaluation used at the horizon. The default is the
+     * difference in the houses.
+     *
+     * @param evaluator The evaluator
+     */
+    public void setEvaluator(Evaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the depth of the last completed iteration.
+     *
+     * @return Search depth
+     */
+    public int getSearchedDepth()
+    {
+        return searchedDepth;
+    }
+
+    /**
+     * Returns the score of the last completed iteration.
+     *
+     * @return Score seen from the player to move at the root
+     */
+    public int getBestScore()
+    {
+        return bestScore;
+    }
+}
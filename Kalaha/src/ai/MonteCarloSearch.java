@@ -0,0 +1,609 @@
+package ai;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Monte Carlo tree search with UCT selection, an alternative to MiniMax
+ * that uses all of the time it is given.
+ *
+ * Each playout walks down the tree, choosing the child with the best upper
+ * confidence bound, expands the leaf it reaches, plays random moves from
+ * there to the end of the game, and adds the result to every node on the
+ * way back up. The move played most often from the root is chosen.
+ *
+ * The tree is kept in a fixed pool of nodes, stored as parallel arrays and
+ * referred to by index, and the children of a node are next to each other
+ * in the pool. Playouts are made on preallocated Boards, so searching
+ * creates no objects. When the pool is full, the tree stops growing but
+ * the playouts go on.
+ *
+ * Several threads can search the same tree (tree parallelization). Visits
+ * and scores are updated atomically. A thread counts its visit to a node on
+ * the way down, before the result is known, which is a virtual loss that
+ * makes the other threads prefer other paths until the result is added on
+ * the way back up. A node is expanded by one thread only, which claims it
+ * by setting its child count to -1, and publishes the children by setting
+ * the real count. Each thread has its own board and random generator.
+ *
+ * The tree is kept between moves. When the next search starts from a
+ * position found a few moves below the last root, that subtree is copied
+ * to the start of a second pool, and the rest of the old tree is dropped.
+ *
+ * Scores are kept in half points: 2 for a win, 1 for a draw, seen from the
+ * player that made the move leading to the node.
+ */
+public class MonteCarloSearch
+{
+    /**
+     * Exploration constant of the UCT formula.
+     */
+    public static final double EXPLORATION = 1.4;
+
+    //Max number of moves from the old root searched for the new root
+    private static final int REUSE_DEPTH = 6;
+
+    //Child count of a node that is being expanded
+    private static final int EXPANDING = -1;
+
+    //Node pool, one entry per node
+    private int[] parent;
+    private int[] firstChild;
+    private byte[] move;
+    private byte[] mover;
+    private AtomicIntegerArray childCount;
+    private AtomicIntegerArray visits;
+    private AtomicIntegerArray score;
+
+    //Second pool, used when the tree is reused
+    private int[] parent2;
+    private int[] firstChild2;
+    private byte[] move2;
+    private byte[] mover2;
+    private AtomicIntegerArray childCount2;
+    private AtomicIntegerArray visits2;
+    private AtomicIntegerArray score2;
+
+    //Old index of each node while the tree is copied
+    private final int[] oldIndex;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final Board rootBoard = new Board();
+    private boolean hasTree;
+
+    //Half of all seeds in the game; a player with more in the house has won
+    private int halfSeeds;
+
+    private final TimeManager timeManager = new TimeManager();
+    private final Worker[] workers;
+    private final ExecutorService helpers;
+    private final Future<?>[] results;
+    private long playouts;
+    private long elapsedMillis;
+    private long playoutLimit;
+    private int reusedVisits;
+
+    /**
+     * Creates a new single-threaded search.
+     *
+     * @param maxNodes Size of the node pool
+     */
+    public MonteCarloSearch(int maxNodes)
+    {
+        this(maxNodes, 1);
+    }
+
+    /**
+     * Creates a new search.
+     *
+     * @param maxNodes Size of the node pool
+     * @param threads Number of search threads, including the calling thread
+     */
+    public MonteCarloSearch(int maxNodes, int threads)
+    {
+        parent = new int[maxNodes];
+        firstChild = new int[maxNodes];
+        move = new byte[maxNodes];
+        mover = new byte[maxNodes];
+        childCount = new AtomicIntegerArray(maxNodes);
+        visits = new AtomicIntegerArray(maxNodes);
+        score = new AtomicIntegerArray(maxNodes);
+
+        parent2 = new int[maxNodes];
+        firstChild2 = new int[maxNodes];
+        move2 = new byte[maxNodes];
+        mover2 = new byte[maxNodes];
+        childCount2 = new AtomicIntegerArray(maxNodes);
+        visits2 = new AtomicIntegerArray(maxNodes);
+        score2 = new AtomicIntegerArray(maxNodes);
+
+        oldIndex = new int[maxNodes];
+
+        workers = new Worker[Math.max(threads, 1)];
+        results = new Future<?>[workers.length];
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new Worker();
+        }
+        setSeed(0);
+
+        if (workers.length > 1)
+        {
+            helpers = Executors.newFixedThreadPool(workers.length - 1, new ThreadFactory()
+            {
+                private int cnt = 0;
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "MCTS helper " + (++cnt));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        else
+        {
+            helpers = null;
+        }
+    }
+
+    /**
+     * Finds the best move within a time limit.
+     *
+     * @param state Current game state
+     * @param maxTimeMillis Time limit in milliseconds
+     * @return Best move (1-6)
+     */
+    public int findBestMove(GameState state, long maxTimeMillis)
+    {
+        return findBestMove(state.toBoard(), maxTimeMillis);
+    }
+
+    /**
+     * Finds the best move within a time limit.
+     *
+     * @param root Position to search
+     * @param maxTimeMillis Time limit in milliseconds
+     * @return Best move (1-6)
+     */
+    public int findBestMove(Board root, long maxTimeMillis)
+    {
+        return findBestMove(root, maxTimeMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs playouts on all threads until the time is up or the number of
+     * playouts is reached, and returns the move played most often from the
+     * root. No search is made if there is only one legal move.
+     *
+     * @param root Position to search
+     * @param maxTimeMillis Time limit in milliseconds
+     * @param maxPlayouts Max number of playouts, shared by the threads
+     * @return Best move (1-6)
+     */
+    public int findBestMove(Board root, long maxTimeMillis, long maxPlayouts)
+    {
+        timeManager.start(maxTimeMillis);
+        playouts = 0;
+        playoutLimit = maxPlayouts == Long.MAX_VALUE ? maxPlayouts : (maxPlayouts + workers.length - 1) / workers.length;
+
+        int legal = 0;
+        int firstMove = 0;
+        int onlyMove = 0;
+        for (int z = 1; z <= 6; z++)
+        {
+            if (root.moveIsPossible(z))
+            {
+                legal++;
+                if (firstMove == 0) firstMove = z;
+                onlyMove = z;
+            }
+        }
+        if (legal == 1)
+        {
+            elapsedMillis = timeManager.elapsedMillis();
+            return onlyMove;
+        }
+
+        setRoot(root);
+
+        for (int i = 1; i < workers.length; i++)
+        {
+            results[i] = helpers.submit(workers[i]);
+        }
+        workers[0].run();
+        playouts = workers[0].playouts;
+
+        //The main thread is done, so the helpers stop as well
+        timeManager.stop();
+        for (int i = 1; i < workers.length; i++)
+        {
+            try
+            {
+                results[i].get();
+                playouts += workers[i].playouts;
+            }
+            catch (Exception ex)
+            {
+                //A failed helper only means fewer playouts
+            }
+        }
+        elapsedMillis = timeManager.elapsedMillis();
+
+        //The root is not expanded if the time ran out or the node pool was
+        //full before the first playout
+        int children = childCount.get(0);
+        if (children <= 0)
+        {
+            return firstMove;
+        }
+
+        int first = firstChild[0];
+        int best = first;
+        for (int c = first; c < first + children; c++)
+        {
+            if (visits.get(c) > visits.get(best)) best = c;
+        }
+        return move[best];
+    }
+
+    /**
+     * Makes the tree start from a position, reusing the subtree of the old
+     * tree if the position is found in it.
+     *
+     * @param root Position to search
+     */
+    private void setRoot(Board root)
+    {
+        int node = -1;
+        if (hasTree)
+        {
+            workers[0].board.copyFrom(rootBoard);
+            node = findNode(workers[0].board, 0, root.getHash(), REUSE_DEPTH);
+        }
+
+        if (node > 0)
+        {
+            copySubtree(node);
+        }
+        else if (node < 0)
+        {
+            size.set(1);
+            parent[0] = -1;
+            childCount.set(0, 0);
+            visits.set(0, 0);
+            score.set(0, 0);
+        }
+        reusedVisits = visits.get(0);
+        rootBoard.copyFrom(root);
+        hasTree = true;
+        halfSeeds = (root.getScore(1) + root.getScore(2) + root.getAmboSeeds()) / 2;
+    }
+
+    /**
+     * Searches the expanded part of the tree for a position, depth first.
+     *
+     * @param board Board at the node, follows the search
+     * @param node Node to search from
+     * @param hash Hash of the position to find
+     * @param depth Max number of moves below the node
+     * @return Index of the node, or -1 if not found
+     */
+    private int findNode(Board board, int node, long hash, int depth)
+    {
+        if (board.getHash() == hash) return node;
+        if (depth == 0) return -1;
+
+        for (int c = firstChild[node]; c < firstChild[node] + childCount.get(node); c++)
+        {
+            board.makeMove(move[c]);
+            int found = findNode(board, c, hash, depth - 1);
+            board.unmakeMove();
+            if (found >= 0) return found;
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the subtree below a node to the start of the second pool,
+     * breadth first so the children of each node stay together, and swaps
+     * the pools.
+     *
+     * @param node New root
+     */
+    private void copySubtree(int node)
+    {
+        oldIndex[0] = node;
+        parent2[0] = -1;
+        move2[0] = move[node];
+        mover2[0] = mover[node];
+        visits2.set(0, visits.get(node));
+        score2.set(0, score.get(node));
+        int next = 1;
+
+        for (int n = 0; n < next; n++)
+        {
+            int old = oldIndex[n];
+            int cnt = childCount.get(old);
+            childCount2.set(n, cnt);
+            firstChild2[n] = next;
+            for (int i = 0; i < cnt; i++)
+            {
+                int oc = firstChild[old] + i;
+                oldIndex[next] = oc;
+                parent2[next] = n;
+                move2[next] = move[oc];
+                mover2[next] = mover[oc];
+                visits2.set(next, visits.get(oc));
+                score2.set(next, score.get(oc));
+                next++;
+            }
+        }
+        size.set(next);
+
+        int[] ti = parent; parent = parent2; parent2 = ti;
+        ti = firstChild; firstChild = firstChild2; firstChild2 = ti;
+        byte[] tb = move; move = move2; move2 = tb;
+        tb = mover; mover = mover2; mover2 = tb;
+        AtomicIntegerArray ta = childCount; childCount = childCount2; childCount2 = ta;
+        ta = visits; visits = visits2; visits2 = ta;
+        ta = score; score = score2; score2 = ta;
+    }
+
+    /**
+     * Search state of one thread.
+     */
+    private class Worker implements Runnable
+    {
+        private final Board board = new Board();
+        private long randomState;
+        private long playouts;
+
+        /**
+         * Runs playouts until the time is up or the thread has made its
+         * share of the playouts.
+         */
+        public void run()
+        {
+            playouts = 0;
+            while (playouts < playoutLimit
+                    && (!TimeManager.shouldCheck(playouts + 1) || !timeManager.hardLimitReached()))
+            {
+                playout();
+                playouts++;
+            }
+        }
+
+        /**
+         * Runs one playout: selection, expansion, random moves to the end
+         * of the game, and backpropagation of the result.
+         */
+        private void playout()
+        {
+            board.copyFrom(rootBoard);
+
+            //Selection, with a virtual loss in every node passed
+            int node = 0;
+            visits.incrementAndGet(0);
+            int cnt;
+            while ((cnt = childCount.get(node)) > 0)
+            {
+                node = select(node, cnt);
+                visits.incrementAndGet(node);
+                board.makeMove(move[node]);
+            }
+
+            //Expansion, unless the game has ended, the pool is full or
+            //another thread is expanding the node
+            if (cnt == 0 && !board.gameEnded() && (visits.get(node) > 1 || node == 0) && expand(node))
+            {
+                node = firstChild[node];
+                visits.incrementAndGet(node);
+                board.makeMove(move[node]);
+            }
+
+            //Random moves to the end of the game, or until the winner is decided
+            while (!board.gameEnded() && board.getPly() < Board.MAX_PLY
+                    && board.getScore(1) <= halfSeeds && board.getScore(2) <= halfSeeds)
+            {
+                int z;
+                do
+                {
+                    z = 1 + nextRandom(6);
+                } while (!board.moveIsPossible(z));
+                board.makeMove(z);
+            }
+
+            //Backpropagation. The visits were already counted.
+            int s1 = board.getScore(1);
+            int s2 = board.getScore(2);
+            int winner = s1 > s2 ? 1 : (s2 > s1 ? 2 : 0);
+            while (node >= 0)
+            {
+                if (winner == 0) score.addAndGet(node, 1);
+                else if (winner == mover[node]) score.addAndGet(node, 2);
+                node = parent[node];
+            }
+        }
+
+        /**
+         * Chooses the child with the highest upper confidence bound.
+         * Children that have not been visited are chosen first.
+         *
+         * @param node Parent node
+         * @param cnt Number of children
+         * @return Index of the chosen child
+         */
+        private int select(int node, int cnt)
+        {
+            double logVisits = Math.log(visits.get(node));
+            int first = firstChild[node];
+            int best = first;
+            double bestValue = -1;
+            for (int c = first; c < first + cnt; c++)
+            {
+                int v = visits.get(c);
+                if (v == 0) return c;
+
+                double value = score.get(c) * 0.5 / v + EXPLORATION * Math.sqrt(logVisits / v);
+                if (value > bestValue)
+                {
+                    bestValue = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds a child for each legal move of the current board.
+         *
+         * @param node Node to expand
+         * @return True if expanded, false if the pool is full or another
+         * thread is expanding the node
+         */
+        private boolean expand(int node)
+        {
+            if (size.get() + 6 > parent.length) return false;
+            if (!childCount.compareAndSet(node, 0, EXPANDING)) return false;
+
+            int legal = 0;
+            for (int z = 1; z <= 6; z++)
+            {
+                if (board.moveIsPossible(z)) legal++;
+            }
+            int first = size.getAndAdd(legal);
+            if (first + legal > parent.length)
+            {
+                childCount.set(node, 0);
+                return false;
+            }
+
+            int player = board.getNextPlayer();
+            int c = first;
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!board.moveIsPossible(z)) continue;
+                parent[c] = node;
+                move[c] = (byte)z;
+                mover[c] = (byte)player;
+                childCount.set(c, 0);
+                visits.set(c, 0);
+                score.set(c, 0);
+                c++;
+            }
+            firstChild[node] = first;
+
+            //Publishes the children to the other threads
+            childCount.set(node, legal);
+            return true;
+        }
+
+        /**
+         * Returns a random number with a xorshift generator.
+         *
+         * @param n Upper bound (exclusive)
+         * @return Random number from 0 to n - 1
+         */
+        private int nextRandom(int n)
+        {
+            long x = randomState;
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            randomState = x;
+            return (int)((x >>> 33) % n);
+        }
+    }
+
+    /**
+     * Returns the number of search threads.
+     *
+     * @return Number of threads
+     */
+    public int getThreads()
+    {
+        return workers.length;
+    }
+
+    /**
+     * Returns the number of playouts by all threads in the last search.
+     *
+     * @return Playout count
+     */
+    public long getPlayouts()
+    {
+        return playouts;
+    }
+
+    /**
+     * Returns the number of playouts per second in the last search.
+     *
+     * @return Playouts per second
+     */
+    public long getPlayoutsPerSecond()
+    {
+        return elapsedMillis == 0 ? 0 : playouts * 1000 / elapsedMillis;
+    }
+
+    /**
+     * Returns the number of playouts kept from the previous search, i.e.
+     * the visits of the root when the search started.
+     *
+     * @return Reused playouts
+     */
+    public int getReusedPlayouts()
+    {
+        return reusedVisits;
+    }
+
+    /**
+     * Returns the number of nodes in the tree.
+     *
+     * @return Node count
+     */
+    public int getTreeSize()
+    {
+        return Math.min(size.get(), parent.length);
+    }
+
+    /**
+     * Reseeds the random playouts of all threads. A single-threaded search
+     * with a fixed number of playouts then makes the same moves every
+     * time; with several threads the result also depends on the timing.
+     *
+     * @param seed Random seed
+     */
+    public void setSeed(long seed)
+    {
+        for (int i = 0; i < workers.length; i++)
+        {
+            //xorshift never leaves a zero state, so avoid it
+            long x = (seed + i + 1) * 0x9E3779B97F4A7C15L;
+            workers[i].randomState = x != 0 ? x : 1;
+        }
+    }
+
+    /**
+     * Drops the tree, so the next search starts from scratch. Used before
+     * a new game.
+     */
+    public void clear()
+    {
+        hasTree = false;
+    }
+
+    /**
+     * Stops the helper threads. The search can not be used after this.
+     */
+    public void shutdown()
+    {
+        if (helpers != null) helpers.shutdownNow();
+    }
+}
@@ -0,0 +1,280 @@
+package ai;
+
+import java.util.Arrays;
+import kalaha.Board;
+
+/**
+ * Orders the moves in a search node, so that alpha-beta pruning can cut off
+ * as early as possible. Moves are tried in this order:
+ *
+ * 1. The principal variation move and the transposition table move
+ * 2. Moves where the last seed lands in the own house (extra turn)
+ * 3. Captures, largest first
+ * 4. Killer moves (moves that caused a cutoff at the same ply)
+ * 5. The rest, by history score (how often the move caused cutoffs)
+ *
+ * The ordered moves for each ply are kept in preallocated arrays.
+ */
+public class MoveOrderer
+{
+    //Score bases for the move categories
+    private static final int PV_SCORE = 1 << 30;
+    private static final int TT_SCORE = 1 << 29;
+    private static final int EXTRA_TURN_SCORE = 1 << 28;
+    private static final int CAPTURE_SCORE = 1 << 27;
+    private static final int KILLER_SCORE = 1 << 26;
+    private static final int HISTORY_MAX = 1 << 25;
+
+    //Ordered moves and their scores, 6 per ply
+    private final int[] moves;
+    private final int[] scores;
+
+    //True for ordered moves that neither capture nor give an extra turn
+    private final boolean[] quiet;
+
+    //Two killer moves per ply
+    private final int[] killers;
+
+    //History score per player and move, indexed by player * 7 + move
+    private final int[] history = new int[3 * 7];
+
+    private boolean enabled = true;
+
+    /**
+     * Creates a new move orderer.
+     *
+     * @param maxPly Maximum distance from the root
+     */
+    public MoveOrderer(int maxPly)
+    {
+        moves = new int[(maxPly + 1) * 6];
+        scores = new int[(maxPly + 1) * 6];
+        quiet = new boolean[(maxPly + 1) * 6];
+        killers = new int[(maxPly + 1) * 2];
+    }
+
+    /**
+     * Turns ordering by move type, killers and history on or off. When off,
+     * only the principal variation and transposition table moves are tried
+     * first, and the rest are tried in ambo order.
+     *
+     * @param enabled True to order all moves
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Forgets all killers and history scores.
+     */
+    public void clear()
+    {
+        Arrays.fill(killers, 0);
+        Arrays.fill(history, 0);
+    }
+
+    /**
+     * Prepares for a new search. Killers are cleared and history scores
+     * from earlier searches are aged.
+     */
+    public void newSearch()
+    {
+        Arrays.fill(killers, 0);
+        for (int i = 0; i < history.length; i++)
+        {
+            history[i] >>= 2;
+        }
+    }
+
+    /**
+     * Generates and orders the legal moves for the current board.
+     *
+     * @param board Current board
+     * @param ply Distance from the root
+     * @param pvMove Principal variation move, or 0
+     * @param ttMove Transposition table move, or 0
+     * @return Number of legal moves, see getMove()
+     */
+    public int generate(Board board, int ply, int pvMove, int ttMove)
+    {
+        int player = board.getNextPlayer();
+        int base = ply * 6;
+        int cnt = 0;
+
+        for (int z = 1; z <= 6; z++)
+        {
+            int seeds = board.getSeeds(z, player);
+            if (seeds == 0) continue;
+
+            int noisy = enabled ? rateNoisy(board, player, z, seeds) : 0;
+            int score;
+            if (z == pvMove)
+            {
+                score = PV_SCORE;
+            }
+            else if (z == ttMove)
+            {
+                score = TT_SCORE;
+            }
+            else if (!enabled)
+            {
+                score = -z;
+            }
+            else if (noisy != 0)
+            {
+                score = noisy;
+            }
+            else
+            {
+                score = rateQuiet(player, z, ply);
+            }
+
+            //Insertion sort, highest score first
+            int i = cnt;
+            while (i > 0 && scores[base + i - 1] < score)
+            {
+                moves[base + i] = moves[base + i - 1];
+                scores[base + i] = scores[base + i - 1];
+                quiet[base + i] = quiet[base + i - 1];
+                i--;
+            }
+            moves[base + i] = z;
+            scores[base + i] = score;
+            quiet[base + i] = noisy == 0;
+            cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * Generates and orders the moves that give an extra turn or capture
+     * seeds, for the quiescence search.
+     *
+     * @param board Current board
+     * @param ply Distance from the root
+     * @return Number of moves, see getMove()
+     */
+    public int generateNoisy(Board board, int ply)
+    {
+        int player = board.getNextPlayer();
+        int base = ply * 6;
+        int cnt = 0;
+
+        for (int z = 1; z <= 6; z++)
+        {
+            int seeds = board.getSeeds(z, player);
+            if (seeds == 0) continue;
+
+            int score = rateNoisy(board, player, z, seeds);
+            if (score == 0) continue;
+
+            int i = cnt;
+            while (i > 0 && scores[base + i - 1] < score)
+            {
+                moves[base + i] = moves[base + i - 1];
+                scores[base + i] = scores[base + i - 1];
+                quiet[base + i] = quiet[base + i - 1];
+                i--;
+            }
+            moves[base + i] = z;
+            scores[base + i] = score;
+            quiet[base + i] = false;
+            cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * Rates a quiet move that is neither the principal variation nor the
+     * transposition table move.
+     *
+     * @param player Player to move
+     * @param z The move (1-6)
+     * @param ply Distance from the root
+     * @return Ordering score
+     */
+    private int rateQuiet(int player, int z, int ply)
+    {
+        if (z == killers[ply * 2]) return KILLER_SCORE + 1;
+        if (z == killers[ply * 2 + 1]) return KILLER_SCORE;
+
+        return history[player * 7 + z];
+    }
+
+    /**
+     * Rates a move that gives an extra turn or captures seeds.
+     *
+     * @param board Current board
+     * @param player Player to move
+     * @param z The move (1-6)
+     * @param seeds Seeds in the ambo
+     * @return Ordering score, or 0 if the move is quiet
+     */
+    private static int rateNoisy(Board board, int player, int z, int seeds)
+    {
+        //Distance from the ambo to the own house is 7 - z for both players,
+        //and a full lap around the board sows 13 seeds
+        if (seeds % 13 == 7 - z)
+        {
+            //Ambos closest to the house first, since they do not
+            //disturb the others
+            return EXTRA_TURN_SCORE + z;
+        }
+
+        //Also finds captures that go round the board, see Board.getCapture()
+        int captured = board.getCapture(z);
+        if (captured > 0)
+        {
+            return CAPTURE_SCORE + captured;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns an ordered move.
+     *
+     * @param ply Distance from the root
+     * @param i Index of the move, from 0 to the number of moves - 1
+     * @return The move (1-6)
+     */
+    public int getMove(int ply, int i)
+    {
+        return moves[ply * 6 + i];
+    }
+
+    /**
+     * Records a move that caused a beta cutoff. Quiet moves (no extra turn
+     * or capture) become killers at this ply and get a history bonus, also
+     * if they were tried first as the principal variation or transposition
+     * table move.
+     *
+     * @param ply Distance from the root
+     * @param i Index of the move
+     * @param player Player that made the move
+     * @param depth Remaining depth of the node
+     */
+    public void cutoff(int ply, int i, int player, int depth)
+    {
+        if (!enabled || !quiet[ply * 6 + i]) return;
+
+        int z = moves[ply * 6 + i];
+        if (killers[ply * 2] != z)
+        {
+            killers[ply * 2 + 1] = killers[ply * 2];
+            killers[ply * 2] = z;
+        }
+
+        int h = history[player * 7 + z] + depth * depth;
+        if (h >= HISTORY_MAX)
+        {
+            //Scale down to stay below the killer scores
+            for (int k = 0; k < history.length; k++)
+            {
+                history[k] >>= 1;
+            }
+            h >>= 1;
+        }
+        history[player * 7 + z] = h;
+    }
+}
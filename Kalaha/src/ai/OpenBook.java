@@ -0,0 +1,172 @@
+package ai;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Opening book with the best move for positions early in the game, read
+ * from a file made by OpenBookGenerator.
+ *
+ * The entries are kept in an open addressing hash table in a single long
+ * array, two longs per slot: the position hash and the packed move and
+ * score. A lookup is a few array reads, with no objects created.
+ *
+ * File format: magic number (int), number of entries (int), and for each
+ * entry, in any order: hash (long), move (byte), score (short).
+ */
+public final class OpenBook
+{
+    static final int MAGIC = 0x4B4F4231;
+
+    private final long[] table;
+    private final int mask;
+    private final int size;
+
+    /**
+     * Creates an empty book with room for a number of entries.
+     *
+     * @param entries Number of entries
+     */
+    private OpenBook(int entries)
+    {
+        //At most half full, so the probe sequences stay short
+        int slots = Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1;
+        table = new long[slots * 2];
+        mask = slots - 1;
+        size = entries;
+    }
+
+    /**
+     * Reads a book file.
+     *
+     * @param file Book file
+     * @return The book
+     * @throws IOException If the file can not be read or is not a book
+     */
+    public static OpenBook load(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not an opening book file: " + file);
+            }
+            int entries = in.readInt();
+            OpenBook book = new OpenBook(entries);
+            for (int i = 0; i < entries; i++)
+            {
+                long hash = in.readLong();
+                int move = in.readByte();
+                int score = in.readShort();
+                book.put(hash, move, score);
+            }
+            return book;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds an entry to the table. A hash of 0 marks an empty slot, so that
+     * position (if it exists) is left out.
+     *
+     * @param hash Position hash
+     * @param move Best move (1-6)
+     * @param score Score of the move, seen from the player to move
+     */
+    private void put(long hash, int move, int score)
+    {
+        if (hash == 0) return;
+
+        int slot = slot(hash);
+        while (table[slot * 2] != 0 && table[slot * 2] != hash)
+        {
+            slot = (slot + 1) & mask;
+        }
+        table[slot * 2] = hash;
+        table[slot * 2 + 1] = ((long)score << 8) | move;
+    }
+
+    /**
+     * Finds the slot of a hash, or the empty slot where it would be.
+     *
+     * @param hash Position hash
+     * @return Slot index
+     */
+    private int slot(long hash)
+    {
+        int slot = (int)(hash ^ (hash >>> 32)) & mask;
+        while (table[slot * 2] != 0 && table[slot * 2] != hash)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the book move for a position.
+     *
+     * @param state Current game state
+     * @return Best move (1-6), or 0 if the position is not in the book
+     */
+    public int getMove(GameState state)
+    {
+        return getMove(state.getHash());
+    }
+
+    /**
+     * Returns the book move for a position.
+     *
+     * @param board Current board
+     * @return Best move (1-6), or 0 if the position is not in the book
+     */
+    public int getMove(Board board)
+    {
+        return getMove(board.getHash());
+    }
+
+    /**
+     * Returns the book move for a position hash.
+     *
+     * @param hash Position hash
+     * @return Best move (1-6), or 0 if the position is not in the book
+     */
+    public int getMove(long hash)
+    {
+        if (hash == 0) return 0;
+        int slot = slot(hash);
+        return table[slot * 2] == hash ? (int)(table[slot * 2 + 1] & 0xFF) : 0;
+    }
+
+    /**
+     * Returns the score of the book move for a position hash.
+     *
+     * @param hash Position hash
+     * @return Score seen from the player to move, or 0 if the position is
+     * not in the book
+     */
+    public int getScore(long hash)
+    {
+        if (hash == 0) return 0;
+        int slot = slot(hash);
+        return table[slot * 2] == hash ? (int)(table[slot * 2 + 1] >> 8) : 0;
+    }
+
+    /**
+     * Returns the number of positions in the book.
+     *
+     * @return Number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,172 @@
+package ai;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import kalaha.Board;
+
+/**
+ * Generates the opening book file read by OpenBook.
+ *
+ * All positions reachable from the start position within a number of moves
+ * are collected, with transpositions counted once. Each position is then
+ * searched to a fixed depth, with one search per thread, and the best move
+ * and score are written to the book, in the order the positions were found.
+ * Positions with only one legal move are left out, since they need no search.
+ *
+ * Usage: java ai.OpenBookGenerator [moves] [depth] [file] [threads]
+ */
+public class OpenBookGenerator
+{
+    //Transposition table size for each search thread
+    private static final int TT_SIZE_MB = 16;
+
+    /**
+     * A position in the book.
+     */
+    private static class Entry
+    {
+        long hash;
+        int move;
+        int score;
+    }
+
+    /**
+     * Generates a book file.
+     *
+     * @param args Number of moves from the start, search depth, file name and
+     * number of threads
+     * @throws Exception If the file can not be written or a search fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int depth = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        String file = args.length > 2 ? args[2] : Global.openBookFile;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.currentTimeMillis();
+        List<Board> positions = collect(moves);
+        System.out.println(positions.size() + " positions within " + moves + " moves");
+
+        //One search per thread
+        final ThreadLocal<MiniMax> searches = new ThreadLocal<MiniMax>()
+        {
+            @Override
+            protected MiniMax initialValue()
+            {
+                return new MiniMax(new TranspositionTable(TT_SIZE_MB));
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Entry>> results = new ArrayList<Future<Entry>>();
+        for (final Board position : positions)
+        {
+            results.add(pool.submit(new Callable<Entry>()
+            {
+                public Entry call()
+                {
+                    MiniMax search = searches.get();
+                    Entry e = new Entry();
+                    e.hash = position.getHash();
+                    e.move = search.findBestMove(position, depth, Long.MAX_VALUE);
+                    e.score = search.getBestScore();
+                    return e;
+                }
+            }));
+        }
+
+        Entry[] entries = new Entry[results.size()];
+        for (int i = 0; i < entries.length; i++)
+        {
+            entries[i] = results.get(i).get();
+            if ((i + 1) % 100 == 0)
+            {
+                System.out.println("Searched " + (i + 1) + " positions");
+            }
+        }
+        pool.shutdown();
+
+        write(file, entries);
+        System.out.println("Wrote " + entries.length + " positions to " + file + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Collects all positions within a number of moves from the start position
+     * that are not ended and have more than one legal move.
+     *
+     * @param moves Max number of moves from the start position
+     * @return The positions
+     */
+    private static List<Board> collect(int moves)
+    {
+        List<Board> positions = new ArrayList<Board>();
+        Set<Long> seen = new HashSet<Long>();
+        List<Board> level = new ArrayList<Board>();
+        level.add(new Board());
+        seen.add(level.get(0).getHash());
+
+        for (int m = 0; m <= moves; m++)
+        {
+            List<Board> next = new ArrayList<Board>();
+            for (Board b : level)
+            {
+                int legal = 0;
+                for (int z = 1; z <= 6; z++)
+                {
+                    if (!b.moveIsPossible(z)) continue;
+                    legal++;
+
+                    if (m == moves) continue;
+                    Board child = new Board(b);
+                    child.makeMove(z);
+                    if (!child.gameEnded() && seen.add(child.getHash()))
+                    {
+                        next.add(child);
+                    }
+                }
+                if (legal > 1) positions.add(b);
+            }
+            level = next;
+        }
+        return positions;
+    }
+
+    /**
+     * Writes the book file.
+     *
+     * @param file File name
+     * @param entries Entries
+     * @throws IOException If the file can not be written
+     */
+    private static void write(String file, Entry[] entries) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try
+        {
+            out.writeInt(OpenBook.MAGIC);
+            out.writeInt(entries.length);
+            for (Entry e : entries)
+            {
+                out.writeLong(e.hash);
+                out.writeByte(e.move);
+                out.writeShort(e.score);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Multi-threaded search in the style of Lazy SMP.
+ *
+ * All threads run the normal iterative deepening search from the same root
+ * and share one transposition table and one clock. There is no other
+ * communication between them: the helper threads fill the table with
+ * results the main thread can use. The helpers start one or two iterations
+ * deeper than the main thread in turn (2, 3, 1, 2, 3, ...), so the threads
+ * do not all search the same nodes in the same order.
+ *
+ * When the main thread stops, all helpers are stopped, and the move from the
+ * deepest completed iteration of any thread is returned.
+ */
+public class ParallelSearch
+{
+    private final TranspositionTable transpositionTable;
+    private final TimeManager timeManager = new TimeManager();
+    private final MiniMax[] workers;
+    private final ExecutorService helpers;
+
+    private int searchedDepth;
+    private long nodes;
+
+    /**
+     * Creates a new parallel search.
+     *
+     * @param threads Number of search threads, including the calling thread
+     * @param transpositionTable Table shared by all threads, kept between searches
+     */
+    public ParallelSearch(int threads, TranspositionTable transpositionTable)
+    {
+        this.transpositionTable = transpositionTable;
+        workers = new MiniMax[Math.max(threads, 1)];
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new MiniMax(transpositionTable, timeManager);
+        }
+
+        if (workers.length > 1)
+        {
+            helpers = Executors.newFixedThreadPool(workers.length - 1, new ThreadFactory()
+            {
+                private int cnt = 0;
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "Search helper " + (++cnt));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        else
+        {
+            helpers = null;
+        }
+    }
+
+    /**
+     * Finds the best move within a time limit.
+     *
+     * @param state Current game state
+     * @param maxTimeMillis Time limit in milliseconds
+     * @return Best move (1-6), or 0 if there is no legal move
+     */
+    public int findBestMove(GameState state, long maxTimeMillis)
+    {
+        return findBestMove(state.toBoard(), MiniMax.MAX_DEPTH, maxTimeMillis);
+    }
+
+    /**
+     * Finds the best move using all threads.
+     *
+     * @param root Position to search
+     * @param maxDepth Deepest iteration to search
+     * @param maxTimeMillis Time limit in milliseconds
+     * @return Best move (1-6) of the deepest completed iteration, or 0 if
+     * there is no legal move
+     */
+    public int findBestMove(final Board root, final int maxDepth, long maxTimeMillis)
+    {
+        timeManager.start(maxTimeMillis);
+        transpositionTable.newSearch();
+
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>(workers.length);
+        for (int i = 1; i < workers.length; i++)
+        {
+            final MiniMax helper = workers[i];
+            final int startDepth = 1 + i % 3;
+            results.add(helpers.submit(new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    return helper.search(root, startDepth, maxDepth);
+                }
+            }));
+        }
+
+        int bestMove = workers[0].search(root, 1, maxDepth);
+        searchedDepth = workers[0].getSearchedDepth();
+        nodes = workers[0].getNodes();
+
+        //The main thread is done, so the helpers stop as well
+        timeManager.stop();
+        for (int i = 1; i < workers.length; i++)
+        {
+            try
+            {
+                int move = results.get(i - 1).get();
+                nodes += workers[i].getNodes();
+                if (workers[i].getSearchedDepth() > searchedDepth)
+                {
+                    searchedDepth = workers[i].getSearchedDepth();
+                    bestMove = move;
+                }
+            }
+            catch (Exception ex)
+            {
+                //A failed helper only means less help
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Returns the number of search threads.
+     *
+     * @return Number of threads
+     */
+    public int getThreads()
+    {
+        return workers.length;
+    }
+
+    /**
+     * Returns the depth of the deepest completed iteration in the last search.
+     *
+     * @return Search depth
+     */
+    public int getSearchedDepth()
+    {
+        return searchedDepth;
+    }
+
+    /**
+     * Returns the number of nodes searched by all threads in the last search.
+     *
+     * @return Node count
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Returns the cutoff on first move rate of the main thread in the last
+     * search.
+     *
+     * @return Cutoff on first move rate (0-1)
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return workers[0].getFirstMoveCutoffRate();
+    }
+
+    /**
+     * Sets the endgame tablebase used by all threads.
+     *
+     * @param tablebase The tablebase, or null to search all positions
+     */
+    public void setTablebase(EndgameTablebase tablebase)
+    {
+        for (MiniMax worker : workers)
+        {
+            worker.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Sets the static evaluation used by all threads.
+     *
+     * @param evaluator The evaluator, shared by the threads
+     */
+    public void setEvaluator(Evaluator evaluator)
+    {
+        for (MiniMax worker : workers)
+        {
+            worker.setEvaluator(evaluator);
+        }
+    }
+
+    /**
+     * Stops the helper threads. The search can not be used after this.
+     */
+    public void shutdown()
+    {
+        if (helpers != null) helpers.shutdownNow();
+    }
+}
@@ -0,0 +1,21 @@
+package ai;
+
+import kalaha.Board;
+
+/**
+ * Evaluates a board by the difference in seeds in the houses only.
+ */
+public class StoreDifferenceEvaluator implements Evaluator
+{
+    /**
+     * Evaluates a board.
+     *
+     * @param board Board to evaluate
+     * @return Difference in the houses, seen from the player to move
+     */
+    public int evaluate(Board board)
+    {
+        int player = board.getNextPlayer();
+        return board.getScore(player) - board.getScore(3 - player);
+    }
+}
@@ -0,0 +1,96 @@
+package ai;
+
+/**
+ * Keeps track of the time for one move.
+ *
+ * The hard limit is the time for the move; when it is reached the search
+ * is stopped in the middle of an iteration. The soft limit is checked
+ * between iterations: once half the time is used, a new iteration would
+ * most likely not finish, so none is started.
+ *
+ * Reading the clock is slow compared to searching a node, so the search
+ * only checks the hard limit every CHECK_INTERVAL nodes. A clock can be
+ * shared by several search threads, which all stop when it is stopped.
+ */
+public class TimeManager
+{
+    /**
+     * Number of nodes between each check of the hard limit. Must be a
+     * power of two.
+     */
+    public static final int CHECK_INTERVAL = 1024;
+
+    private long startTime;
+    private long softLimit;
+    private long hardLimit;
+    private volatile boolean stopped;
+
+    /**
+     * Starts the clock for a new move.
+     *
+     * @param maxTimeMillis Time for the move in milliseconds
+     */
+    public void start(long maxTimeMillis)
+    {
+        startTime = System.nanoTime();
+        stopped = false;
+        if (maxTimeMillis >= Long.MAX_VALUE / 1000000L)
+        {
+            hardLimit = Long.MAX_VALUE;
+        }
+        else
+        {
+            hardLimit = maxTimeMillis * 1000000L;
+        }
+        softLimit = hardLimit / 2;
+    }
+
+    /**
+     * Stops all searches using this clock, as if the hard limit was reached.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Checks if a node count is due for a check of the hard limit.
+     *
+     * @param nodes Nodes searched so far
+     * @return True if the clock should be read
+     */
+    public static boolean shouldCheck(long nodes)
+    {
+        return (nodes & (CHECK_INTERVAL - 1)) == 0;
+    }
+
+    /**
+     * Checks if there is time left to start a new iteration.
+     *
+     * @return True if the soft limit is reached
+     */
+    public boolean softLimitReached()
+    {
+        return stopped || System.nanoTime() - startTime >= softLimit;
+    }
+
+    /**
+     * Checks if the search must stop now.
+     *
+     * @return True if the hard limit is reached
+     */
+    public boolean hardLimitReached()
+    {
+        return stopped || System.nanoTime() - startTime >= hardLimit;
+    }
+
+    /**
+     * Returns the time used since start() was called.
+     *
+     * @return Elapsed time in milliseconds
+     */
+    public long elapsedMillis()
+    {
+        return (System.nanoTime() - startTime) / 1000000L;
+    }
+}
@@ -0,0 +1,217 @@
+package ai;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table for the minimax search.
+ *
+ * Entries are kept in a preallocated long array, in buckets of four entries
+ * (one 64 byte cache line). Each entry is two longs: the position hash XORed
+ * with the data, and the data itself. The data packs the score, search depth,
+ * bound type, best move and table generation. A reader only accepts an entry
+ * if the two longs XOR back to its hash, so several search threads can read
+ * and write the table without locks; an entry torn by a concurrent write is
+ * simply seen as a miss.
+ */
+public final class TranspositionTable
+{
+    /**
+     * The score is the exact minimax value.
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * The score is a lower bound (the search failed high).
+     */
+    public static final int LOWER = 2;
+
+    /**
+     * The score is an upper bound (the search failed low).
+     */
+    public static final int UPPER = 3;
+
+    //Entries per bucket, and longs per entry
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int ENTRY_SIZE = 2;
+
+    //Data layout: score 0-15, depth 16-23, bound 24-25, move 26-28, generation 32-39
+    private static final int DEPTH_SHIFT = 16;
+    private static final int BOUND_SHIFT = 24;
+    private static final int MOVE_SHIFT = 26;
+    private static final int GEN_SHIFT = 32;
+
+    private final long[] table;
+    private final long bucketMask;
+    private volatile int generation;
+
+    /**
+     * Creates a new transposition table.
+     *
+     * @param megabytes Memory size of the table. Rounded down to a power of two.
+     */
+    public TranspositionTable(int megabytes)
+    {
+        long bytes = (long)Math.max(megabytes, 1) << 20;
+        long buckets = Long.highestOneBit(bytes / (BUCKET_ENTRIES * ENTRY_SIZE * 8));
+        //Keep within the maximum Java array size
+        buckets = Math.min(buckets, 1L << 27);
+        table = new long[(int)(buckets * BUCKET_ENTRIES * ENTRY_SIZE)];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Starts a new search. Entries from earlier searches are kept, but are
+     * replaced before entries from the current search.
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Removes all entries from the table.
+     */
+    public void clear()
+    {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param hash Position hash
+     * @return Entry data, or 0 if the position is not in the table
+     */
+    public long probe(long hash)
+    {
+        int base = bucket(hash);
+        for (int i = 0; i < BUCKET_ENTRIES * ENTRY_SIZE; i += ENTRY_SIZE)
+        {
+            long data = table[base + i + 1];
+            if ((table[base + i] ^ data) == hash && data != 0)
+            {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result. An existing entry for the same position is
+     * replaced unless it was searched deeper in the current search. Otherwise
+     * the entry from the oldest generation, and then the shallowest entry, in
+     * the bucket is replaced.
+     *
+     * @param hash Position hash
+     * @param depth Remaining search depth (0-255)
+     * @param bound Bound type (EXACT, LOWER or UPPER)
+     * @param score Score of the position
+     * @param move Best move (1-6), or 0 if not known
+     */
+    public void store(long hash, int depth, int bound, int score, int move)
+    {
+        int base = bucket(hash);
+        int gen = generation;
+        int victim = base;
+        int victimValue = Integer.MAX_VALUE;
+
+        for (int i = 0; i < BUCKET_ENTRIES * ENTRY_SIZE; i += ENTRY_SIZE)
+        {
+            long data = table[base + i + 1];
+            if ((table[base + i] ^ data) == hash)
+            {
+                if (depth < depth(data) && generation(data) == gen && bound != EXACT)
+                {
+                    return;
+                }
+                if (move == 0) move = move(data);
+                victim = base + i;
+                break;
+            }
+
+            //Prefer to replace entries from old searches, then shallow entries
+            int age = (gen - generation(data)) & 0xFF;
+            int value = depth(data) - (age << 8);
+            if (data == 0) value = Integer.MIN_VALUE;
+            if (value < victimValue)
+            {
+                victimValue = value;
+                victim = base + i;
+            }
+        }
+
+        long data = (score & 0xFFFFL)
+                | ((long)depth << DEPTH_SHIFT)
+                | ((long)bound << BOUND_SHIFT)
+                | ((long)move << MOVE_SHIFT)
+                | ((long)gen << GEN_SHIFT);
+        table[victim] = hash ^ data;
+        table[victim + 1] = data;
+    }
+
+    /**
+     * Returns the array index of the bucket for a hash.
+     *
+     * @param hash Position hash
+     * @return Index of the first entry in the bucket
+     */
+    private int bucket(long hash)
+    {
+        return (int)(hash & bucketMask) * (BUCKET_ENTRIES * ENTRY_SIZE);
+    }
+
+    /**
+     * Returns the score of an entry.
+     *
+     * @param data Entry data from probe()
+     * @return Score
+     */
+    public static int score(long data)
+    {
+        return (short)data;
+    }
+
+    /**
+     * Returns the search depth of an entry.
+     *
+     * @param data Entry data from probe()
+     * @return Remaining search depth
+     */
+    public static int depth(long data)
+    {
+        return (int)(data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the bound type of an entry.
+     *
+     * @param data Entry data from probe()
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long data)
+    {
+        return (int)(data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Returns the best move of an entry.
+     *
+     * @param data Entry data from probe()
+     * @return Best move (1-6), or 0 if not known
+     */
+    public static int move(long data)
+    {
+        return (int)(data >>> MOVE_SHIFT) & 0x7;
+    }
+
+    /**
+     * Returns the table generation an entry was stored in.
+     *
+     * @param data Entry data
+     * @return Generation (0-255)
+     */
+    private static int generation(long data)
+    {
+        return (int)(data >>> GEN_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import ai.MiniMax;
+import ai.TranspositionTable;
+import java.lang.management.ManagementFactory;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Measures how much memory the minimax search allocates. Runs fixed depth
+ * searches from a set of reference positions and prints the bytes
+ * allocated per node, which should be close to zero.
+ *
+ * Usage: java bench.AllocationBenchmark [depth] [rounds]
+ */
+public class AllocationBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Search depth and number of rounds
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        TranspositionTable table = new TranspositionTable(64);
+        MiniMax search = new MiniMax(table);
+        Board[] boards = new Board[Positions.REFERENCE.length];
+        for (int i = 0; i < boards.length; i++)
+        {
+            boards[i] = new GameState(Positions.REFERENCE[i]).toBoard();
+        }
+
+        //Warm up
+        for (Board b : boards)
+        {
+            search.findBestMove(b, depth, Long.MAX_VALUE);
+        }
+
+        for (int r = 1; r <= rounds; r++)
+        {
+            long nodes = 0;
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            long time = System.nanoTime();
+            for (Board b : boards)
+            {
+                //Search from scratch every round
+                table.clear();
+                search.findBestMove(b, depth, Long.MAX_VALUE);
+                nodes += search.getNodes();
+            }
+            time = System.nanoTime() - time;
+            bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+            System.out.printf("Round %d: %d nodes, %.0f nodes/s, %d bytes allocated, %.4f bytes/node, %.3f MB/s%n",
+                    r, nodes, nodes * 1e9 / time, bytes, (double)bytes / nodes, bytes * 1e3 / time);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package bench;
+
+import ai.Evaluator;
+import ai.FeatureEvaluator;
+import ai.MiniMax;
+import ai.StoreDifferenceEvaluator;
+import ai.TranspositionTable;
+import java.util.Random;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Compares the feature evaluator with the house difference evaluator. Prints
+ * the time per evaluation of the reference positions, and plays fixed depth
+ * searches with the two evaluators against each other. Each opening (four
+ * random moves) is played twice, with the sides swapped.
+ *
+ * With a time per move, the searches are limited by time instead of depth,
+ * so the cost of the evaluation counts as well. That is how the AI plays,
+ * so an evaluator should win this way before it becomes the default.
+ *
+ * Usage: java bench.EvaluatorBenchmark [depth] [openings] [millis per move]
+ */
+public class EvaluatorBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Search depth, number of openings and time per move (0 for
+     * fixed depth searches)
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int openings = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        Evaluator features = new FeatureEvaluator();
+        Evaluator store = new StoreDifferenceEvaluator();
+        System.out.printf("Feature evaluator: %.1f ns per evaluation%n", timeEvaluation(features));
+        System.out.printf("House difference evaluator: %.1f ns per evaluation%n", timeEvaluation(store));
+
+        MiniMax withFeatures = new MiniMax(new TranspositionTable(16));
+        withFeatures.setEvaluator(features);
+        MiniMax withStore = new MiniMax(new TranspositionTable(16));
+        withStore.setEvaluator(store);
+
+        Random rnd = new Random(1);
+        int wins = 0;
+        int losses = 0;
+        int draws = 0;
+        for (int g = 0; g < openings; g++)
+        {
+            Board start = new Board();
+            for (int i = 0; i < 4 && !start.gameEnded(); i++)
+            {
+                int m = 1 + rnd.nextInt(6);
+                if (start.moveIsPossible(m)) start.makeMove(m);
+                else i--;
+            }
+
+            for (int side = 1; side <= 2; side++)
+            {
+                Board b = new Board(start);
+                while (!b.gameEnded())
+                {
+                    MiniMax search = b.getNextPlayer() == side ? withFeatures : withStore;
+                    if (millis > 0)
+                    {
+                        b.makeMove(search.findBestMove(b, MiniMax.MAX_DEPTH, millis));
+                    }
+                    else
+                    {
+                        b.makeMove(search.findBestMove(b, depth, Long.MAX_VALUE));
+                    }
+                }
+
+                int w = b.getWinner();
+                if (w == side) wins++;
+                else if (w == 0) draws++;
+                else losses++;
+            }
+        }
+
+        System.out.printf("Features vs house difference at %s: %d wins, %d draws, %d losses%n",
+                millis > 0 ? millis + " ms per move" : "depth " + depth, wins, draws, losses);
+    }
+
+    /**
+     * Measures the average time to evaluate the reference positions.
+     *
+     * @param evaluator Evaluator to time
+     * @return Nanoseconds per evaluation
+     */
+    private static double timeEvaluation(Evaluator evaluator)
+    {
+        Board[] boards = new Board[Positions.REFERENCE.length];
+        for (int i = 0; i < boards.length; i++)
+        {
+            boards[i] = new GameState(Positions.REFERENCE[i]).toBoard();
+        }
+
+        int rounds = 2000000;
+        long sum = 0;
+        long start = 0;
+        for (int r = 0; r < rounds * 2; r++)
+        {
+            //First half is warm-up
+            if (r == rounds) start = System.nanoTime();
+            sum += evaluator.evaluate(boards[r % boards.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == 42) System.out.println();
+        return (double)elapsed / rounds;
+    }
+}
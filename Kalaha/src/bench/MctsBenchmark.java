@@ -0,0 +1,74 @@
+package bench;
+
+import ai.MiniMax;
+import ai.MonteCarloSearch;
+import ai.TranspositionTable;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Measures the playouts per second of the Monte Carlo tree search on the
+ * reference positions, and plays it against MiniMax with the same time per
+ * move. Each game is played twice, with the sides swapped.
+ *
+ * Usage: java bench.MctsBenchmark [millis] [games]
+ */
+public class MctsBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Time per move in milliseconds and number of games per side
+     */
+    public static void main(String[] args)
+    {
+        int millis = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        MonteCarloSearch mcts = new MonteCarloSearch(1 << 20);
+        System.out.printf("%-36s %6s %12s %12s %10s%n", "Position", "Move", "Playouts", "Playouts/s", "Tree");
+        for (String pos : Positions.REFERENCE)
+        {
+            int move = mcts.findBestMove(new GameState(pos).toBoard(), millis);
+            System.out.printf("%-36s %6d %12d %12d %10d%n", pos, move, mcts.getPlayouts(),
+                    mcts.getPlayoutsPerSecond(), mcts.getTreeSize());
+        }
+
+        MiniMax miniMax = new MiniMax(new TranspositionTable(64));
+        int wins = 0;
+        int draws = 0;
+        int losses = 0;
+        long reused = 0;
+        long playouts = 0;
+        for (int g = 0; g < games; g++)
+        {
+            for (int side = 1; side <= 2; side++)
+            {
+                Board b = new Board();
+                while (!b.gameEnded())
+                {
+                    if (b.getNextPlayer() == side)
+                    {
+                        b.makeMove(mcts.findBestMove(b, millis));
+                        reused += mcts.getReusedPlayouts();
+                        playouts += mcts.getPlayouts();
+                    }
+                    else
+                    {
+                        b.makeMove(miniMax.findBestMove(b, MiniMax.MAX_DEPTH, millis));
+                    }
+                }
+
+                int w = b.getWinner();
+                if (w == side) wins++;
+                else if (w == 0) draws++;
+                else losses++;
+            }
+        }
+        if (games > 0)
+        {
+            System.out.printf("MCTS vs MiniMax at %d ms: %d wins, %d draws, %d losses%n", millis, wins, draws, losses);
+            System.out.printf("Playouts reused from the previous move: %.1f%%%n", reused * 100.0 / Math.max(playouts + reused, 1));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import ai.MiniMax;
+import ai.MonteCarloSearch;
+import ai.TranspositionTable;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Measures how the tree-parallel Monte Carlo search scales with the number
+ * of threads. For each thread count, searches the reference positions for
+ * a fixed time and prints the playouts per second of all threads together,
+ * then plays a number of games against single-threaded MiniMax with the
+ * same time per move, both sides, and prints the result.
+ *
+ * Usage: java bench.MctsScalingBenchmark [millis] [games] [thread counts, e.g. 1,2,4]
+ */
+public class MctsScalingBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Time per move, games per side and thread counts
+     */
+    public static void main(String[] args)
+    {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        String[] counts = (args.length > 2 ? args[2] : "1,2,4,8,16").split(",");
+
+        System.out.printf("%8s %14s %8s %8s %8s %10s%n", "Threads", "Playouts/s", "Wins", "Draws", "Losses", "Score");
+        for (String c : counts)
+        {
+            int threads = Integer.parseInt(c.trim());
+            MonteCarloSearch mcts = new MonteCarloSearch(1 << 20, threads);
+
+            long playouts = 0;
+            long time = 0;
+            for (String pos : Positions.REFERENCE)
+            {
+                long start = System.nanoTime();
+                mcts.findBestMove(new GameState(pos).toBoard(), millis);
+                time += System.nanoTime() - start;
+                playouts += mcts.getPlayouts();
+            }
+
+            MiniMax miniMax = new MiniMax(new TranspositionTable(64));
+            int wins = 0;
+            int draws = 0;
+            int losses = 0;
+            for (int g = 0; g < games; g++)
+            {
+                for (int side = 1; side <= 2; side++)
+                {
+                    Board b = new Board();
+                    while (!b.gameEnded())
+                    {
+                        if (b.getNextPlayer() == side)
+                        {
+                            b.makeMove(mcts.findBestMove(b, millis));
+                        }
+                        else
+                        {
+                            b.makeMove(miniMax.findBestMove(b, MiniMax.MAX_DEPTH, millis));
+                        }
+                    }
+
+                    int w = b.getWinner();
+                    if (w == side) wins++;
+                    else if (w == 0) draws++;
+                    else losses++;
+                }
+            }
+            mcts.shutdown();
+
+            int played = wins + draws + losses;
+            System.out.printf("%8d %14.0f %8d %8d %8d %9.1f%%%n", threads, playouts * 1e9 / time,
+                    wins, draws, losses, played == 0 ? 0.0 : (wins + draws * 0.5) * 100.0 / played);
+        }
+    }
+}
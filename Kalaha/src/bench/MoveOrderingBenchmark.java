@@ -0,0 +1,44 @@
+package bench;
+
+import ai.MiniMax;
+import ai.TranspositionTable;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Compares the search with and without move ordering. Searches the
+ * reference positions to a fixed depth and prints the node count and the
+ * share of beta cutoffs caused by the first move tried.
+ *
+ * Usage: java bench.MoveOrderingBenchmark [depth]
+ */
+public class MoveOrderingBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Search depth
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+
+        TranspositionTable table = new TranspositionTable(64);
+        MiniMax search = new MiniMax(table);
+
+        System.out.printf("%-36s %10s %14s %14s%n", "Position", "Ordering", "Nodes", "First move");
+        for (String pos : Positions.REFERENCE)
+        {
+            Board board = new GameState(pos).toBoard();
+            for (int k = 0; k < 2; k++)
+            {
+                boolean ordering = k == 1;
+                table.clear();
+                search.setMoveOrdering(ordering);
+                search.findBestMove(board, depth, Long.MAX_VALUE);
+                System.out.printf("%-36s %10s %14d %13.1f%%%n", pos, ordering ? "on" : "off",
+                        search.getNodes(), search.getFirstMoveCutoffRate() * 100);
+            }
+        }
+    }
+}
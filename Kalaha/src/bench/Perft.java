@@ -0,0 +1,290 @@
+package bench;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Counts the leaf nodes of the game tree to a fixed depth (perft), with both
+ * GameState and the packed Board, and prints the counts per root move and
+ * the speed of each. The counts must be the same for both, so this checks
+ * that a board representation generates exactly the same tree as GameState.
+ * Both use table-driven sowing, so the tree is also counted once with the
+ * original seed-by-seed loop (see SowingCheck) as the reference.
+ *
+ * Every move counts as one ply, also a move that gives an extra turn, so a
+ * leaf is a position after exactly depth moves. Games that end earlier are
+ * not leaves and count as 0.
+ *
+ * Subtrees are split across a ForkJoinPool down to SPLIT_DEPTH plies from
+ * the leaves, and counted in a single thread below that.
+ *
+ * Usage: java bench.Perft [depth] [board string] [threads]
+ */
+public class Perft
+{
+    //Subtrees with this many plies left or less are counted in one thread
+    private static final int SPLIT_DEPTH = 6;
+
+    /**
+     * Runs perft.
+     *
+     * @param args Depth, board string (default is the start position) and
+     * number of threads
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String start = args.length > 1 ? args[1] : new GameState().toString();
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        GameState root = new GameState(start);
+        System.out.println("Perft " + depth + " from " + start + " on " + threads + " threads");
+        System.out.printf("%-6s %16s %16s %16s%n", "Move", "Loop", "GameState", "Board");
+
+        long[] total = new long[3];
+        long[] time = new long[3];
+        boolean same = true;
+        int[] rootPits = new int[14];
+        String[] tokens = start.split(";");
+        for (int i = 0; i < 14; i++)
+        {
+            rootPits[i] = Integer.parseInt(tokens[i]);
+        }
+        for (int z = 1; z <= 6; z++)
+        {
+            if (!root.moveIsPossible(z)) continue;
+
+            int[] pits = rootPits.clone();
+            int player = SowingCheck.legacyMove(pits, root.getNextPlayer(), z);
+            long tl = System.nanoTime();
+            long loopNodes = pool.invoke(new LoopTask(pits, player, depth - 1));
+
+            GameState state = root.clone();
+            state.makeMove(z);
+            long t0 = System.nanoTime();
+            long stateNodes = pool.invoke(new GameStateTask(state, depth - 1));
+            long t1 = System.nanoTime();
+
+            Board board = root.toBoard();
+            board.makeMove(z);
+            long boardNodes = pool.invoke(new BoardTask(board, depth - 1));
+            long t2 = System.nanoTime();
+
+            total[0] += stateNodes;
+            total[1] += boardNodes;
+            total[2] += loopNodes;
+            time[0] += t1 - t0;
+            time[1] += t2 - t1;
+            time[2] += t0 - tl;
+            boolean match = stateNodes == loopNodes && boardNodes == loopNodes;
+            if (!match) same = false;
+            System.out.printf("%-6d %16d %16d %16d%s%n", z, loopNodes, stateNodes, boardNodes,
+                    match ? "" : "  MISMATCH");
+        }
+
+        System.out.printf("%-6s %16d %16d %16d%n", "Total", total[2], total[0], total[1]);
+        System.out.printf("Loop:      %d ms, %.1f M leaves/s%n", time[2] / 1000000,
+                total[2] * 1000.0 / Math.max(time[2], 1));
+        System.out.printf("GameState: %d ms, %.1f M leaves/s%n", time[0] / 1000000,
+                total[0] * 1000.0 / Math.max(time[0], 1));
+        System.out.printf("Board:     %d ms, %.1f M leaves/s%n", time[1] / 1000000,
+                total[1] * 1000.0 / Math.max(time[1], 1));
+        System.out.println(same ? "Counts match" : "Counts differ");
+    }
+
+    /**
+     * Counts the leaves below a plain board array, with the original
+     * seed-by-seed sowing loop.
+     */
+    private static class LoopTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] pits;
+        private final int player;
+        private final int depth;
+
+        LoopTask(int[] pits, int player, int depth)
+        {
+            this.pits = pits;
+            this.player = player;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (depth <= SPLIT_DEPTH)
+            {
+                return count(pits, player, depth);
+            }
+            if (ended(pits)) return 0L;
+
+            LoopTask[] tasks = new LoopTask[6];
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!possible(pits, player, z)) continue;
+                int[] next = pits.clone();
+                int nextPlayer = SowingCheck.legacyMove(next, player, z);
+                tasks[z - 1] = new LoopTask(next, nextPlayer, depth - 1);
+                tasks[z - 1].fork();
+            }
+            long nodes = 0;
+            for (LoopTask t : tasks)
+            {
+                if (t != null) nodes += t.join();
+            }
+            return nodes;
+        }
+
+        private static long count(int[] pits, int player, int depth)
+        {
+            if (depth == 0) return 1;
+            if (ended(pits)) return 0;
+
+            long nodes = 0;
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!possible(pits, player, z)) continue;
+                int[] next = pits.clone();
+                int nextPlayer = SowingCheck.legacyMove(next, player, z);
+                nodes += count(next, nextPlayer, depth - 1);
+            }
+            return nodes;
+        }
+
+        private static boolean possible(int[] pits, int player, int z)
+        {
+            return pits[(player == 1 ? GameState.START_S : GameState.START_N) + z - 1] > 0;
+        }
+
+        private static boolean ended(int[] pits)
+        {
+            int south = 0;
+            int north = 0;
+            for (int i = GameState.START_S; i <= GameState.END_S; i++) south += pits[i];
+            for (int i = GameState.START_N; i <= GameState.END_N; i++) north += pits[i];
+            return south == 0 || north == 0;
+        }
+    }
+
+    /**
+     * Counts the leaves below a GameState, cloning the state for each move.
+     */
+    private static class GameStateTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final GameState state;
+        private final int depth;
+
+        GameStateTask(GameState state, int depth)
+        {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (depth <= SPLIT_DEPTH)
+            {
+                return count(state, depth);
+            }
+            if (state.isTerminal()) return 0L;
+
+            GameStateTask[] tasks = new GameStateTask[6];
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!state.moveIsPossible(z)) continue;
+                GameState next = state.clone();
+                next.makeMove(z);
+                tasks[z - 1] = new GameStateTask(next, depth - 1);
+                tasks[z - 1].fork();
+            }
+            long nodes = 0;
+            for (GameStateTask t : tasks)
+            {
+                if (t != null) nodes += t.join();
+            }
+            return nodes;
+        }
+
+        private static long count(GameState state, int depth)
+        {
+            if (depth == 0) return 1;
+            if (state.isTerminal()) return 0;
+
+            long nodes = 0;
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!state.moveIsPossible(z)) continue;
+                GameState next = state.clone();
+                next.makeMove(z);
+                nodes += count(next, depth - 1);
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Counts the leaves below a Board, making and taking back moves in place.
+     */
+    private static class BoardTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int depth;
+
+        BoardTask(Board board, int depth)
+        {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (depth <= SPLIT_DEPTH)
+            {
+                return count(board, depth);
+            }
+            if (board.gameEnded()) return 0L;
+
+            BoardTask[] tasks = new BoardTask[6];
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!board.moveIsPossible(z)) continue;
+                Board next = new Board(board);
+                next.makeMove(z);
+                tasks[z - 1] = new BoardTask(next, depth - 1);
+                tasks[z - 1].fork();
+            }
+            long nodes = 0;
+            for (BoardTask t : tasks)
+            {
+                if (t != null) nodes += t.join();
+            }
+            return nodes;
+        }
+
+        private static long count(Board board, int depth)
+        {
+            if (depth == 0) return 1;
+            if (board.gameEnded()) return 0;
+
+            long nodes = 0;
+            for (int z = 1; z <= 6; z++)
+            {
+                if (!board.makeMove(z)) continue;
+                nodes += count(board, depth - 1);
+                board.unmakeMove();
+            }
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package bench;
+
+/**
+ * Reference positions used by the benchmarks, in the board string format
+ * used by the server.
+ */
+public class Positions
+{
+    /**
+     * Start position, an early middle game, two middle games and an
+     * endgame.
+     */
+    public static final String[] REFERENCE = {
+        "0;6;6;6;6;6;6;0;6;6;6;6;6;6;1",
+        "1;0;7;7;7;7;7;1;7;7;7;0;7;7;1",
+        "4;2;0;9;1;8;10;6;3;8;1;0;9;7;2",
+        "12;1;3;0;5;2;4;15;0;7;2;6;1;10;1",
+        "25;0;1;2;0;3;1;30;2;0;1;3;0;4;2",
+    };
+}
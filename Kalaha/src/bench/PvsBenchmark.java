@@ -0,0 +1,49 @@
+package bench;
+
+import ai.MiniMax;
+import ai.TranspositionTable;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Compares principal variation search with aspiration windows against plain
+ * alpha-beta. Searches the reference positions to a fixed depth and prints
+ * the node count, best move and score of each. Both should find the same
+ * score.
+ *
+ * Usage: java bench.PvsBenchmark [depth]
+ */
+public class PvsBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Search depth
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+
+        TranspositionTable table = new TranspositionTable(64);
+        MiniMax search = new MiniMax(table);
+
+        System.out.printf("%-36s %10s %14s %6s %6s%n", "Position", "Search", "Nodes", "Move", "Score");
+        long[] total = new long[2];
+        for (String pos : Positions.REFERENCE)
+        {
+            Board board = new GameState(pos).toBoard();
+            for (int k = 0; k < 2; k++)
+            {
+                boolean pvs = k == 1;
+                table.clear();
+                search.setPrincipalVariationSearch(pvs);
+                int move = search.findBestMove(board, depth, Long.MAX_VALUE);
+                total[k] += search.getNodes();
+                System.out.printf("%-36s %10s %14d %6d %6d%n", pos, pvs ? "pvs" : "alphabeta",
+                        search.getNodes(), move, search.getBestScore());
+            }
+        }
+        System.out.printf("Total nodes: alphabeta %d, pvs %d (%.1f%%)%n", total[0], total[1],
+                total[1] * 100.0 / total[0]);
+    }
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import ai.MiniMax;
+import ai.TranspositionTable;
+import java.util.Random;
+import kalaha.Board;
+
+/**
+ * Plays fixed depth searches with quiescence search against searches one
+ * ply deeper without it, and prints the results and node counts of both.
+ * Each opening (four random moves) is played twice, with the sides swapped.
+ *
+ * Usage: java bench.QuiescenceBenchmark [depth] [openings]
+ */
+public class QuiescenceBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Search depth with quiescence and number of openings
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int openings = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        MiniMax withQ = new MiniMax(new TranspositionTable(16));
+        MiniMax deeper = new MiniMax(new TranspositionTable(16));
+        deeper.setQuiescence(false);
+
+        Random rnd = new Random(1);
+        int wins = 0;
+        int losses = 0;
+        int draws = 0;
+        long nodesQ = 0;
+        long nodesDeeper = 0;
+
+        for (int g = 0; g < openings; g++)
+        {
+            Board start = new Board();
+            for (int i = 0; i < 4 && !start.gameEnded(); i++)
+            {
+                int m = 1 + rnd.nextInt(6);
+                if (start.moveIsPossible(m)) start.makeMove(m);
+                else i--;
+            }
+
+            for (int side = 1; side <= 2; side++)
+            {
+                Board b = new Board(start);
+                while (!b.gameEnded())
+                {
+                    if (b.getNextPlayer() == side)
+                    {
+                        b.makeMove(withQ.findBestMove(b, depth, Long.MAX_VALUE));
+                        nodesQ += withQ.getNodes();
+                    }
+                    else
+                    {
+                        b.makeMove(deeper.findBestMove(b, depth + 1, Long.MAX_VALUE));
+                        nodesDeeper += deeper.getNodes();
+                    }
+                }
+
+                int w = b.getWinner();
+                if (w == side) wins++;
+                else if (w == 0) draws++;
+                else losses++;
+            }
+        }
+
+        System.out.printf("Depth %d + quiescence vs depth %d: %d wins, %d draws, %d losses%n",
+                depth, depth + 1, wins, draws, losses);
+        System.out.printf("Nodes: %d with quiescence, %d without%n", nodesQ, nodesDeeper);
+    }
+}
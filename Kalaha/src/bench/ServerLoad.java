@@ -0,0 +1,357 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import kalaha.Commands;
+import kalaha.ConnectionExecutor;
+import kalaha.Errors;
+import kalaha.GameState;
+import kalaha.KalahaMain;
+import server.KalahaServer;
+
+/**
+ * Load test of the game server. Connects two clients for each game, pairs
+ * them with JOIN so all games are open at the same time, and plays random
+ * moves in all games until they have ended. The games are split over a few
+ * threads, each making one move in each of its games per round. Prints
+ * the time, the games per second and the requests per second.
+ *
+ * With 0 threads, each player instead runs its own blocking loop on the
+ * ConnectionExecutor, on virtual threads if the Java version supports
+ * them. The in-process server then also runs its client threads on
+ * virtual threads.
+ *
+ * In push mode, the players subscribe to the game events and only send
+ * a move when told it is their turn, instead of polling. Each player then
+ * runs its own blocking loop, as with 0 threads.
+ *
+ * In turn mode, the players poll with the compound TURN command, and send
+ * each move together with the next TURN without waiting for the reply to
+ * the move, so a move costs one round trip.
+ *
+ * Starts a headless server in the same process unless a host is given,
+ * with one thread per client or with the given number of NIO event loops.
+ *
+ * Usage: java bench.ServerLoad [games] [threads] [nio loops] [poll|push|turn] [host] [port]
+ */
+public class ServerLoad
+{
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong roundTrips = new AtomicLong();
+    private static final AtomicLong moves = new AtomicLong();
+    private static boolean turn;
+
+    /**
+     * Runs the load test.
+     *
+     * @param args Number of games, client threads (0 for one per player),
+     * event loops of the local server, poll, push or turn, server host and
+     * port
+     * @throws Exception If the server can not be reached
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int nioLoops = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        final boolean push = args.length > 3 && args[3].equals("push");
+        turn = args.length > 3 && args[3].equals("turn");
+        String host = args.length > 4 ? args[4] : null;
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : KalahaMain.port;
+        if (push)
+        {
+            threads = 0;
+        }
+
+        if (threads == 0 && !ConnectionExecutor.enableVirtualThreads())
+        {
+            System.out.println("Virtual threads are not supported, using platform threads");
+        }
+
+        if (host == null)
+        {
+            KalahaMain.headless = true;
+            KalahaMain.port = port;
+            KalahaMain.nioLoops = nioLoops;
+            KalahaServer.getInstance().start();
+            host = "localhost";
+        }
+
+        long start = System.nanoTime();
+        List<Player> players = new ArrayList<Player>(2 * games);
+        for (int i = 0; i < 2 * games; i++)
+        {
+            Player p = new Player(new Socket(host, port), i);
+            p.join();
+            players.add(p);
+        }
+        long connected = System.nanoTime();
+        System.out.printf("%d games joined in %d ms%n", games, (connected - start) / 1000000);
+
+        if (threads == 0)
+        {
+            final CountDownLatch done = new CountDownLatch(players.size());
+            for (final Player p : players)
+            {
+                ConnectionExecutor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        if (push)
+                        {
+                            p.playSubscribed();
+                        }
+                        else
+                        {
+                            List<Player> own = new ArrayList<Player>(1);
+                            own.add(p);
+                            play(own);
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        else
+        {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++)
+            {
+                final List<Player> own = new ArrayList<Player>();
+                for (int i = t; i < players.size(); i += threads)
+                {
+                    own.add(players.get(i));
+                }
+                pool.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        play(own);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.DAYS);
+        }
+        long time = System.nanoTime() - connected;
+
+        int[] results = new int[3];
+        for (Player p : players)
+        {
+            if (p.winner >= 0 && p.player == 1) results[p.winner]++;
+            p.close();
+        }
+        System.out.printf("Played in %d ms: %d south wins, %d north wins, %d draws%n", time / 1000000,
+                results[1], results[2], results[0]);
+        System.out.printf("%.1f games/s, %.0f requests/s, %.2f round trips per move%n", games * 1e9 / time,
+                requests.get() * 1e9 / time, (double)roundTrips.get() / moves.get());
+        System.exit(0);
+    }
+
+    /**
+     * Plays a set of clients in rounds until all of their games have ended.
+     * In each round a client checks the winner and, if it is its turn,
+     * tries a random move.
+     *
+     * @param own Clients of this thread
+     */
+    private static void play(List<Player> own)
+    {
+        try
+        {
+            boolean active = true;
+            while (active)
+            {
+                active = false;
+                for (Player p : own)
+                {
+                    if (p.winner < 0)
+                    {
+                        if (turn)
+                        {
+                            p.stepTurn();
+                        }
+                        else
+                        {
+                            p.step();
+                        }
+                        active = true;
+                    }
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * One client connection.
+     */
+    private static class Player
+    {
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+        private final Random rnd;
+        private int player;
+        private int winner = -1;
+
+        //Board if it is this player's turn, from the last TURN reply
+        private GameState state;
+
+        Player(Socket socket, long seed) throws Exception
+        {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            out = new PrintWriter(socket.getOutputStream(), false);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            rnd = new Random(seed);
+        }
+
+        String send(String cmd) throws Exception
+        {
+            requests.incrementAndGet();
+            roundTrips.incrementAndGet();
+            if (cmd.startsWith(Commands.MOVE))
+            {
+                moves.incrementAndGet();
+            }
+            out.println(cmd);
+            out.flush();
+            return in.readLine();
+        }
+
+        /**
+         * Sends a move and a TURN together, and waits for both replies.
+         *
+         * @param move Ambo to move
+         * @return Reply to the TURN
+         */
+        String sendMoveAndTurn(int move) throws Exception
+        {
+            requests.addAndGet(2);
+            roundTrips.incrementAndGet();
+            moves.incrementAndGet();
+            out.println(Commands.MOVE + " " + move + " " + player);
+            out.println(Commands.TURN);
+            out.flush();
+            in.readLine();
+            return in.readLine();
+        }
+
+        void join() throws Exception
+        {
+            player = Integer.parseInt(send(Commands.JOIN).split(" ")[1]);
+        }
+
+        void step() throws Exception
+        {
+            String reply = send(Commands.WINNER);
+            if (!reply.equals("-1") && !reply.equals(Errors.GAME_NOT_FULL))
+            {
+                winner = Integer.parseInt(reply);
+                return;
+            }
+
+            //Tries one random move. An empty ambo, or a game that ended
+            //after the winner was checked, is found in the next step.
+            reply = send(Commands.NEXT_PLAYER);
+            if (reply.equals("" + player))
+            {
+                send(Commands.MOVE + " " + (1 + rnd.nextInt(6)) + " " + player);
+            }
+        }
+
+        /**
+         * Makes one step with the TURN command: a random legal move if the
+         * last TURN said it was this player's turn, otherwise a new TURN.
+         */
+        void stepTurn() throws Exception
+        {
+            String reply;
+            if (state != null)
+            {
+                reply = sendMoveAndTurn(randomMove(state));
+            }
+            else
+            {
+                reply = send(Commands.TURN);
+            }
+
+            state = null;
+            if (reply.equals(Errors.GAME_NOT_FULL))
+            {
+                return;
+            }
+            String[] tokens = reply.split(" ");
+            winner = Integer.parseInt(tokens[1]);
+            if (winner < 0 && Integer.parseInt(tokens[2]) == player)
+            {
+                state = new GameState(tokens[3]);
+            }
+        }
+
+        /**
+         * Picks a random legal move.
+         *
+         * @param state Current game state
+         * @return Ambo to move
+         */
+        int randomMove(GameState state)
+        {
+            int z;
+            do
+            {
+                z = 1 + rnd.nextInt(6);
+            } while (!state.moveIsPossible(z));
+            return z;
+        }
+
+        /**
+         * Plays the game on events from the server: makes a random legal
+         * move on each YOUR_TURN, until GAME_OVER.
+         */
+        void playSubscribed()
+        {
+            try
+            {
+                send(Commands.SUBSCRIBE);
+                String line;
+                while (winner < 0 && (line = in.readLine()) != null)
+                {
+                    if (line.startsWith(Commands.GAME_OVER))
+                    {
+                        winner = Integer.parseInt(line.substring(Commands.GAME_OVER.length() + 1));
+                    }
+                    else if (line.startsWith(Commands.YOUR_TURN))
+                    {
+                        GameState state = new GameState(line.substring(Commands.YOUR_TURN.length() + 1));
+                        send(Commands.MOVE + " " + randomMove(state) + " " + player);
+                    }
+                }
+            }
+            catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        void close() throws Exception
+        {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import ai.MiniMax;
+import ai.ParallelSearch;
+import ai.TranspositionTable;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Measures how the parallel search scales with the number of threads.
+ * Searches each reference position for a fixed time with 1, 2, 4, 8 and
+ * 16 threads, and prints the average depth reached and the nodes per
+ * second of all threads together.
+ *
+ * Usage: java bench.SmpBenchmark [millis per position] [thread counts, e.g. 1,2,4]
+ */
+public class SmpBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Time per position and thread counts
+     */
+    public static void main(String[] args)
+    {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        String[] counts = (args.length > 1 ? args[1] : "1,2,4,8,16").split(",");
+
+        System.out.printf("%8s %12s %16s%n", "Threads", "Avg depth", "Nodes/s");
+        for (String c : counts)
+        {
+            int threads = Integer.parseInt(c.trim());
+            TranspositionTable table = new TranspositionTable(256);
+            ParallelSearch search = new ParallelSearch(threads, table);
+
+            long depthSum = 0;
+            long nodes = 0;
+            long time = 0;
+            for (String pos : Positions.REFERENCE)
+            {
+                Board board = new GameState(pos).toBoard();
+                table.clear();
+                long start = System.nanoTime();
+                search.findBestMove(board, MiniMax.MAX_DEPTH, millis);
+                time += System.nanoTime() - start;
+                depthSum += search.getSearchedDepth();
+                nodes += search.getNodes();
+            }
+            search.shutdown();
+
+            System.out.printf("%8d %12.1f %16.0f%n", threads,
+                    (double)depthSum / Positions.REFERENCE.length, nodes * 1e9 / time);
+        }
+    }
+}
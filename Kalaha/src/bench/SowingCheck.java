@@ -0,0 +1,214 @@
+package bench;
+
+import ai.MoveOrderer;
+import java.util.Arrays;
+import java.util.Random;
+import kalaha.Board;
+import kalaha.GameState;
+
+/**
+ * Differential check of the table-driven sowing in GameState and Board
+ * against the original seed-by-seed loop. Makes one move in each of a
+ * number of random positions, with all 72 seeds spread at random, some of
+ * them piled in a few ambos so moves go several laps around the board, and
+ * compares the resulting boards, players to move and hashes.
+ *
+ * Also checks the capture the search predicts before a move, with
+ * Board.getCapture() and the noisy moves of MoveOrderer, and the largest
+ * capture seen by the evaluation, against the captures the original loop
+ * makes.
+ *
+ * Usage: java bench.SowingCheck [positions]
+ */
+public class SowingCheck
+{
+    /**
+     * Runs the check.
+     *
+     * @param args Number of random positions
+     */
+    public static void main(String[] args)
+    {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+
+        Random rnd = new Random(7);
+        Board board = new Board();
+        int[] pits = new int[14];
+        int[] expected = new int[14];
+        int errors = 0;
+        int captureErrors = 0;
+        int captures = 0;
+        int checked = 0;
+        int[] captured = new int[1];
+        int[] largestCapture = new int[1];
+        MoveOrderer orderer = new MoveOrderer(0);
+
+        while (checked < positions)
+        {
+            randomPosition(rnd, pits);
+            int player = 1 + rnd.nextInt(2);
+            int ambo = 1 + rnd.nextInt(6);
+            int start = (player == 1 ? GameState.START_S : GameState.START_N) + ambo - 1;
+            if (pits[start] == 0) continue;
+
+            GameState state = new GameState(pits.clone(), player);
+            if (state.isTerminal()) continue;
+            board.set(pits, player);
+            checked++;
+
+            System.arraycopy(pits, 0, expected, 0, 14);
+            int expectedPlayer = legacyMove(expected, player, ambo, captured);
+            if (captured[0] > 0) captures++;
+
+            //A move is noisy if it captures or gives an extra turn
+            boolean noisy = false;
+            int n = orderer.generateNoisy(board, 0);
+            for (int i = 0; i < n; i++)
+            {
+                if (orderer.getMove(0, i) == ambo) noisy = true;
+            }
+            int largest = 0;
+            for (int z = 1; z <= 6; z++)
+            {
+                legacyMove(pits.clone(), player, z, largestCapture);
+                largest = Math.max(largest, largestCapture[0]);
+            }
+            int predicted = board.getCapture(ambo);
+            if (predicted != captured[0] || noisy != (captured[0] > 0 || expectedPlayer == player)
+                    || board.getLargestCapture(player) != largest)
+            {
+                if (captureErrors++ < 10)
+                {
+                    System.out.println("Move " + ambo + " in " + Arrays.toString(pits) + " player " + player
+                            + ": captures " + captured[0] + ", predicted " + predicted + ", noisy " + noisy
+                            + ", largest " + largest + ", predicted " + board.getLargestCapture(player));
+                }
+            }
+
+            state.makeMove(ambo);
+            board.makeMove(ambo);
+            GameState fromBoard = new GameState(board);
+            GameState fromExpected = new GameState(expected, expectedPlayer);
+
+            if (!state.toString().equals(fromExpected.toString())
+                    || !fromBoard.toString().equals(fromExpected.toString())
+                    || state.getHash() != fromExpected.getHash()
+                    || board.getHash() != fromExpected.getHash())
+            {
+                if (errors++ < 10)
+                {
+                    System.out.println("Move " + ambo + " in " + Arrays.toString(pits) + " player " + player
+                            + ": expected " + fromExpected + ", GameState " + state + ", Board " + fromBoard);
+                }
+            }
+        }
+        System.out.println("Checked " + checked + " moves, " + errors + " errors");
+        System.out.println("Checked " + captures + " captures, " + captureErrors + " errors");
+    }
+
+    /**
+     * Spreads 72 seeds over the board. Every fourth position has most seeds
+     * in a few ambos.
+     *
+     * @param rnd Random generator
+     * @param pits Receives the position
+     */
+    private static void randomPosition(Random rnd, int[] pits)
+    {
+        Arrays.fill(pits, 0);
+        boolean piled = rnd.nextInt(4) == 0;
+        for (int s = 0; s < 72; s++)
+        {
+            int i = piled && rnd.nextBoolean() ? 1 + rnd.nextInt(3) * 4 : rnd.nextInt(14);
+            pits[i]++;
+        }
+    }
+
+    /**
+     * Makes a move with the original seed-by-seed loop of GameState. Also
+     * used by Perft as the reference count.
+     *
+     * @param board Board positions, changed by the move
+     * @param player Player making the move
+     * @param ambo The move (1-6)
+     * @return Next player to make a move
+     */
+    static int legacyMove(int[] board, int player, int ambo)
+    {
+        return legacyMove(board, player, ambo, new int[1]);
+    }
+
+    /**
+     * Makes a move with the original seed-by-seed loop of GameState.
+     *
+     * @param board Board positions, changed by the move
+     * @param player Player making the move
+     * @param ambo The move (1-6)
+     * @param captured Receives the seeds captured, counting the capturing
+     * seed, or 0
+     * @return Next player to make a move
+     */
+    static int legacyMove(int[] board, int player, int ambo, int[] captured)
+    {
+        captured[0] = 0;
+        int cMoveI = (player == 1 ? GameState.START_S : GameState.START_N) + ambo - 1;
+        int seeds = board[cMoveI];
+        board[cMoveI] = 0;
+        boolean lastIsHouse = false;
+
+        while (seeds > 0)
+        {
+            cMoveI++;
+            if (cMoveI >= 14) cMoveI = 0;
+
+            if ((player == 1 && cMoveI == GameState.HOUSE_N) || (player == 2 && cMoveI == GameState.HOUSE_S))
+            {
+                //Don't sow in opponents house
+            }
+            else
+            {
+                board[cMoveI]++;
+                seeds--;
+            }
+
+            if (seeds == 0)
+            {
+                if (player == 1 && cMoveI == GameState.HOUSE_S) lastIsHouse = true;
+                if (player == 2 && cMoveI == GameState.HOUSE_N) lastIsHouse = true;
+
+                boolean capture = board[cMoveI] == 1
+                        && (player == 1
+                            ? cMoveI >= GameState.START_S && cMoveI <= GameState.END_S
+                            : cMoveI >= GameState.START_N && cMoveI <= GameState.END_N);
+                if (capture)
+                {
+                    int oi = 14 - cMoveI;
+                    if (board[oi] > 0)
+                    {
+                        int house = player == 1 ? GameState.HOUSE_S : GameState.HOUSE_N;
+                        captured[0] = board[cMoveI] + board[oi];
+                        board[house] += board[cMoveI] + board[oi];
+                        board[cMoveI] = 0;
+                        board[oi] = 0;
+                    }
+                }
+            }
+        }
+
+        //Rule 6, remaining seeds go to their owner
+        int south = 0;
+        int north = 0;
+        for (int i = GameState.START_S; i <= GameState.END_S; i++) south += board[i];
+        for (int i = GameState.START_N; i <= GameState.END_N; i++) north += board[i];
+        if (south == 0 || north == 0)
+        {
+            for (int i = GameState.START_S; i <= GameState.END_S; i++) board[i] = 0;
+            for (int i = GameState.START_N; i <= GameState.END_N; i++) board[i] = 0;
+            board[GameState.HOUSE_S] += south;
+            board[GameState.HOUSE_N] += north;
+        }
+
+        if (lastIsHouse) return player;
+        return 3 - player;
+    }
+}
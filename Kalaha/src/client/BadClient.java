@@ -20,7 +20,6 @@ public class BadClient implements Runnable
     
     private PrintWriter out;
     private BufferedReader in;
-    private Thread thr;
     private Socket socket;
     private boolean running;
     	
@@ -53,8 +52,7 @@ public class BadClient implements Runnable
      */
     public void start()
     {
-        thr = new Thread(this);
-        thr.start();
+        ConnectionExecutor.execute(this);
     }
     
     /**
@@ -89,9 +87,9 @@ public class BadClient implements Runnable
     }
     
     /**
-     * Thread for server communication. Checks when it is this 
-     * client's turn to make a move, and then makes a random
-     * move.
+     * Thread for server communication. Subscribes to the game
+     * events, and makes a move each time the server tells that
+     * it is this client's turn.
      */
     public void run()
     {
@@ -100,74 +98,80 @@ public class BadClient implements Runnable
         
         try
         {
+            out.println(Commands.HELLO);
+            reply = in.readLine();
+
+            String tokens[] = reply.split(" ");
+            player = Integer.parseInt(tokens[1]);
+            
+            addText("I am player " + player);
+            
+            //From now on the server tells when it is my turn
+            //and when the game has ended
+            out.println(Commands.SUBSCRIBE);
+            
+            //Every line is read here, since events can come between a
+            //move and its reply. The ambo tried in the current turn,
+            //or 0 if it is not my turn.
+            int cnt = 0;
             while (running)
             {
-                if (player == -1)
+                reply = in.readLine();
+                if (reply == null)
                 {
-                    out.println(Commands.HELLO);
-                    reply = in.readLine();
-
-                    String tokens[] = reply.split(" ");
-                    player = Integer.parseInt(tokens[1]);
-                    
-                    addText("I am player " + player);
+                    running = false;
                 }
-                
-                //Check if game has ended
-                out.println(Commands.WINNER);
-                reply = in.readLine();
-                if(reply.equals("1") || reply.equals("2") )
+                else if (reply.startsWith(Commands.GAME_OVER))
                 {
-                    int w = Integer.parseInt(reply);
+                    int w = Integer.parseInt(reply.substring(Commands.GAME_OVER.length() + 1));
                     if (w == player)
                     {
                         addText("I won!");
                     }
+                    else if (w == 0)
+                    {
+                        addText("Even game!");
+                    }
                     else
                     {
                         addText("I lost...");
                     }
                     running = false;
                 }
-                if(reply.equals("0"))
+                else if (reply.equals(Errors.OPPONENT_LEFT))
                 {
-                    addText("Even game!");
+                    addText("Opponent left, I won!");
                     running = false;
                 }
-
-                //Check if it is my turn
-                out.println(Commands.NEXT_PLAYER);
-                reply = in.readLine();
-                if (!reply.equals(Errors.GAME_NOT_FULL) && running)
+                else if (reply.startsWith(Commands.YOUR_TURN))
                 {
-                    int nextPlayer = Integer.parseInt(reply);
-
-                    if(nextPlayer == player)
+                    cnt = 1;
+                    out.println(Commands.MOVE + " " + cnt + " " + player);
+                }
+                else if (reply.startsWith(Commands.SUBSCRIBE))
+                {
+                    //Subscribed
+                }
+                else if (reply.startsWith("ERROR"))
+                {
+                    //Try the next ambo
+                    if (cnt > 0 && cnt < 6)
                     {
-                        out.println(Commands.BOARD);
-                        reply = in.readLine();
-                        int cnt = 1;
-                        boolean validMove = false;
-                        while (!validMove)
-                        {
-                            String cMove = "" + cnt;
-                            out.println(Commands.MOVE + " " + cMove + " " + player);
-                            reply = in.readLine();
-                            if (reply.startsWith("ERROR"))
-                            {
-                                cnt++;
-                            }
-                            else
-                            {
-                                validMove = true;
-                                addText("Made move " + cMove);
-                            }
-                        }
+                        cnt++;
+                        out.println(Commands.MOVE + " " + cnt + " " + player);
                     }
+                    else
+                    {
+                        addText("Move failed: " + reply);
+                        cnt = 0;
+                    }
+                }
+                else if (cnt > 0)
+                {
+                    //Reply to a move
+                    addText("Made move " + cnt);
+                    cnt = 0;
                 }
-                
-                //Wait
-                Thread.sleep(100);
             }
 	}
         catch (Exception ex)
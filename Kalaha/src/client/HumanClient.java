@@ -25,7 +25,6 @@ public class HumanClient implements Runnable, ActionListener
     
     private PrintWriter out;
     private BufferedReader in;
-    private Thread thr;
     private Socket socket;
     private boolean running;
     private boolean myTurn;
@@ -75,8 +74,7 @@ public class HumanClient implements Runnable, ActionListener
     {
         if (connected)
         {
-            thr = new Thread(this);
-            thr.start();
+            ConnectionExecutor.execute(this);
         }
     }
     
@@ -257,35 +255,15 @@ public class HumanClient implements Runnable, ActionListener
        
         if (a.startsWith(Commands.MOVE) && running)
         {
-            try
-            {
-                out.println(a + " " + player);
-                String reply = in.readLine();
-                if (reply.equals(Errors.WRONG_PLAYER))
-                {
-                    addText("Move failed: Not my turn");
-                    myTurn = false;
-                }
-                else if (reply.equals(Errors.AMBO_EMPTY))
-                {
-                    addText("Move failed: Ambo is empty");
-                }
-                else
-                {
-                    updateBoard(reply);
-                    myTurn = false;
-                }    
-            }
-            catch (Exception ex)
-            {
-                addText("Failed to send Move command: " + ex.getMessage());
-            }
+            //The reply is read by the client thread
+            out.println(a + " " + player);
         }
     }
     
     /**
-     * Thread for server communication. Checks when it is this 
-     * client's turn to make a move.
+     * Thread for server communication. Subscribes to the game
+     * events, and reads the replies to the moves made with the
+     * buttons.
      */
     public void run()
     {
@@ -294,63 +272,73 @@ public class HumanClient implements Runnable, ActionListener
         
         try
         {
-            while (running)
-            {
-                if (player == -1)
-                {
-                    out.println(Commands.HELLO);
-                    reply = in.readLine();
-
-                    String tokens[] = reply.split(" ");
-                    player = Integer.parseInt(tokens[1]);
+            out.println(Commands.HELLO);
+            reply = in.readLine();
 
-                    addText("I am player " + player);
-                }
+            String tokens[] = reply.split(" ");
+            player = Integer.parseInt(tokens[1]);
 
-                //Check if it is my turn
-                if (!myTurn)
+            addText("I am player " + player);
+            
+            //From now on the server tells when it is my turn
+            //and when the game has ended. Every line is read here,
+            //since events can come between a move and its reply.
+            out.println(Commands.SUBSCRIBE);
+            
+            while (running)
+            {
+                reply = in.readLine();
+                if (reply == null)
                 {
-                    out.println(Commands.NEXT_PLAYER);
-                    reply = in.readLine();
-                    if (!reply.equals(Errors.GAME_NOT_FULL) && running)
-                    {
-                        int nextPlayer = Integer.parseInt(reply);
-
-                        if(nextPlayer == player)
-                        {
-                            out.println(Commands.BOARD);
-                            reply = in.readLine();
-                            updateBoard(reply);
-                            addText("Your move!");
-                            myTurn = true;
-                        }
-                    }
+                    running = false;
                 }
-                
-                //Check if game has ended
-                out.println(Commands.WINNER);
-                reply = in.readLine();
-                if(reply.equals("1") || reply.equals("2"))
+                else if (reply.startsWith(Commands.GAME_OVER))
                 {
-                    int w = Integer.parseInt(reply);
+                    int w = Integer.parseInt(reply.substring(Commands.GAME_OVER.length() + 1));
                     if (w == player)
                     {
                         addText("I won!");
                     }
+                    else if (w == 0)
+                    {
+                        addText("Even game!");
+                    }
                     else
                     {
                         addText("I lost...");
                     }
                     running = false;
                 }
-                if(reply.equals("0"))
+                else if (reply.equals(Errors.OPPONENT_LEFT))
                 {
-                    addText("Even game!");
+                    addText("Opponent left, I won!");
                     running = false;
                 }
-                
-                //Wait
-                Thread.sleep(500);
+                else if (reply.startsWith(Commands.YOUR_TURN))
+                {
+                    updateBoard(reply.substring(Commands.YOUR_TURN.length() + 1));
+                    addText("Your move!");
+                    myTurn = true;
+                }
+                else if (reply.startsWith(Commands.SUBSCRIBE))
+                {
+                    //Subscribed
+                }
+                else if (reply.equals(Errors.WRONG_PLAYER))
+                {
+                    //Reply to a move
+                    addText("Move failed: Not my turn");
+                    myTurn = false;
+                }
+                else if (reply.equals(Errors.AMBO_EMPTY))
+                {
+                    addText("Move failed: Ambo is empty");
+                }
+                else if (!reply.startsWith("ERROR"))
+                {
+                    updateBoard(reply);
+                    myTurn = false;
+                }
             }
 	}
         catch (Exception ex)
@@ -19,7 +19,6 @@ public class RandomClient implements Runnable
     
     private PrintWriter out;
     private BufferedReader in;
-    private Thread thr;
     private Socket socket;
     private boolean running;
     private boolean connected;
@@ -57,8 +56,7 @@ public class RandomClient implements Runnable
     {
         if (connected)
         {
-            thr = new Thread(this);
-            thr.start();
+            ConnectionExecutor.execute(this);
         }
     }
     
@@ -94,9 +92,9 @@ public class RandomClient implements Runnable
     }
     
     /**
-     * Thread for server communication. Checks when it is this 
-     * client's turn to make a move, and then makes a random
-     * move.
+     * Thread for server communication. Subscribes to the game
+     * events, and makes a move each time the server tells that
+     * it is this client's turn.
      */
     public void run()
     {
@@ -105,69 +103,75 @@ public class RandomClient implements Runnable
         
         try
         {
+            out.println(Commands.HELLO);
+            reply = in.readLine();
+
+            String tokens[] = reply.split(" ");
+            player = Integer.parseInt(tokens[1]);
+            
+            addText("I am player " + player);
+            
+            //From now on the server tells when it is my turn
+            //and when the game has ended
+            out.println(Commands.SUBSCRIBE);
+            
+            //Every line is read here, since events can come between a
+            //move and its reply. The move tried in the current turn,
+            //or 0 if it is not my turn.
+            int cMove = 0;
             while (running)
             {
-                if (player == -1)
+                reply = in.readLine();
+                if (reply == null)
                 {
-                    out.println(Commands.HELLO);
-                    reply = in.readLine();
-
-                    String tokens[] = reply.split(" ");
-                    player = Integer.parseInt(tokens[1]);
-                    
-                    addText("I am player " + player);
+                    running = false;
                 }
-                
-                //Check if game has ended
-                out.println(Commands.WINNER);
-                reply = in.readLine();
-                if(reply.equals("1") || reply.equals("2") )
+                else if (reply.startsWith(Commands.GAME_OVER))
                 {
-                    int w = Integer.parseInt(reply);
+                    int w = Integer.parseInt(reply.substring(Commands.GAME_OVER.length() + 1));
                     if (w == player)
                     {
                         addText("I won!");
                     }
+                    else if (w == 0)
+                    {
+                        addText("Even game!");
+                    }
                     else
                     {
                         addText("I lost...");
                     }
                     running = false;
                 }
-                if(reply.equals("0"))
+                else if (reply.equals(Errors.OPPONENT_LEFT))
                 {
-                    addText("Even game!");
+                    addText("Opponent left, I won!");
                     running = false;
                 }
-
-                //Check if it is my turn
-                out.println(Commands.NEXT_PLAYER);
-                reply = in.readLine();
-                if (!reply.equals(Errors.GAME_NOT_FULL) && running)
+                else if (reply.startsWith(Commands.YOUR_TURN))
                 {
-                    int nextPlayer = Integer.parseInt(reply);
-
-                    if(nextPlayer == player)
+                    cMove = getRandom();
+                    out.println(Commands.MOVE + " " + cMove + " " + player);
+                }
+                else if (reply.startsWith(Commands.SUBSCRIBE))
+                {
+                    //Subscribed
+                }
+                else if (reply.startsWith("ERROR"))
+                {
+                    //Try another random move
+                    if (cMove > 0)
                     {
-                        out.println(Commands.BOARD);
-                        reply = in.readLine();
-                        boolean validMove = false;
-                        while (!validMove)
-                        {
-                            String cMove = "" + getRandom();
-                            out.println(Commands.MOVE + " " + cMove + " " + player);
-                            reply = in.readLine();
-                            if (!reply.startsWith("ERROR"))
-                            {
-                                validMove = true;
-                                addText("Made move " + cMove);
-                            }
-                        }
+                        cMove = getRandom();
+                        out.println(Commands.MOVE + " " + cMove + " " + player);
                     }
                 }
-                
-                //Wait
-                Thread.sleep(100);
+                else if (cMove > 0)
+                {
+                    //Reply to a move
+                    addText("Made move " + cMove);
+                    cMove = 0;
+                }
             }
 	}
         catch (Exception ex)
@@ -0,0 +1,572 @@
+package kalaha;
+
+/**
+ * Packed representation of a Kalaha game state, used by the AI search.
+ *
+ * The 14 board positions are stored one byte each in two longs, using the
+ * same indexes as GameState: the low word holds the north house and the
+ * south ambos (index 0-6) and the high word holds the south house and the
+ * north ambos (index 7-13). The player to move is kept in a spare bit of
+ * the low word.
+ *
+ * Moves are made and taken back in place. Previous states are kept in a
+ * preallocated history array, so makeMove() and unmakeMove() never
+ * allocate. A Zobrist hash of the position is updated as the seeds are
+ * sown.
+ */
+public final class Board
+{
+    /**
+     * Default number of moves that can be taken back.
+     */
+    public static final int MAX_PLY = 512;
+
+    //Bits 8-55 of a word, i.e. the six ambos in bytes 1-6
+    private static final long AMBO_MASK = 0x00FFFFFFFFFFFF00L;
+
+    //High bit of each ambo byte
+    private static final long AMBO_HIGH_BITS = 0x0080808080808000L;
+
+    //Seeds giving an extra turn in each ambo byte, without and with a full lap
+    private static final long EXTRA_TURN_SEEDS = 0x0001020304050600L;
+    private static final long EXTRA_TURN_LAP_SEEDS = 0x000E0F1011121300L;
+
+    //Side to move bit in the low word. Set when player 2 is to move.
+    private static final long PLAYER_BIT = 1L << 56;
+
+    //Number of longs stored per move in the history
+    private static final int UNDO_SIZE = 3;
+
+    //Pits 0-6 and the player to move
+    private long lo;
+
+    //Pits 7-13
+    private long hi;
+
+    //Zobrist hash of the position
+    private long hash;
+
+    //Previous states, for unmakeMove()
+    private final long[] history;
+    private int ply;
+
+    /**
+     * Creates a start board for a new Kalaha game.
+     */
+    public Board()
+    {
+        this(new GameState().toBoard());
+    }
+
+    /**
+     * Creates a board from a board representation.
+     *
+     * @param pits Seeds in each of the 14 board positions
+     * @param nextPlayer Next player to make a move
+     */
+    public Board(int[] pits, int nextPlayer)
+    {
+        history = new long[MAX_PLY * UNDO_SIZE];
+        set(pits, nextPlayer);
+    }
+
+    /**
+     * Creates a copy of a board. The move history is not copied.
+     *
+     * @param other The board to copy
+     */
+    public Board(Board other)
+    {
+        history = new long[MAX_PLY * UNDO_SIZE];
+        copyFrom(other);
+    }
+
+    /**
+     * Sets this board to a position, and clears the move history.
+     *
+     * @param pits Seeds in each of the 14 board positions
+     * @param nextPlayer Next player to make a move
+     */
+    public void set(int[] pits, int nextPlayer)
+    {
+        lo = 0;
+        hi = 0;
+        ply = 0;
+        for (int i = 0; i < 14; i++)
+        {
+            add(i, pits[i]);
+        }
+        if (nextPlayer == 2) lo |= PLAYER_BIT;
+
+        //Gather remaining seeds in case the game has ended
+        sweep();
+        hash = computeHash();
+    }
+
+    /**
+     * Sets this board to the same position as another board, and
+     * clears the move history.
+     *
+     * @param other The board to copy
+     */
+    public void copyFrom(Board other)
+    {
+        lo = other.lo;
+        hi = other.hi;
+        hash = other.hash;
+        ply = 0;
+    }
+
+    /**
+     * Returns the number of seeds in a board position.
+     *
+     * @param index Board index (0-13)
+     * @return Number of seeds
+     */
+    public int get(int index)
+    {
+        if (index < 7)
+        {
+            return (int)(lo >>> (index << 3)) & 0xFF;
+        }
+        return (int)(hi >>> ((index - 7) << 3)) & 0xFF;
+    }
+
+    /**
+     * Adds seeds to a board position.
+     *
+     * @param index Board index (0-13)
+     * @param seeds Number of seeds to add (negative to remove)
+     */
+    private void add(int index, int seeds)
+    {
+        if (index < 7)
+        {
+            lo += (long)seeds << (index << 3);
+        }
+        else
+        {
+            hi += (long)seeds << ((index - 7) << 3);
+        }
+    }
+
+    /**
+     * Returns the number of seeds for the specified
+     * ambo and player.
+     *
+     * @param ambo The ambo (1-6)
+     * @param player The player (1-2)
+     * @return Number of seeds
+     */
+    public int getSeeds(int ambo, int player)
+    {
+        if (player == 1)
+        {
+            return get(GameState.START_S + ambo - 1);
+        }
+        return get(GameState.START_N + ambo - 1);
+    }
+
+    /**
+     * Returns the next player to make a move.
+     *
+     * @return Next player to make a move (1 or 2)
+     */
+    public int getNextPlayer()
+    {
+        return (lo & PLAYER_BIT) == 0 ? 1 : 2;
+    }
+
+    /**
+     * Checks if a move is possible.
+     *
+     * @param ambo The move to make (1-6)
+     * @return True if the move is possible (at least one seed in the ambo), false otherwise
+     */
+    public boolean moveIsPossible(int ambo)
+    {
+        return getSeeds(ambo, getNextPlayer()) > 0;
+    }
+
+    /**
+     * Makes a move on this board. The move can be taken back
+     * with unmakeMove().
+     *
+     * @param ambo The move to make (1-6)
+     * @return True if the move was successful, false if not.
+     */
+    public boolean makeMove(int ambo)
+    {
+        int player = getNextPlayer();
+        int cMoveI = (player == 1 ? GameState.START_S : GameState.START_N) + ambo - 1;
+
+        //Check if legal move
+        int seeds = get(cMoveI);
+        if (seeds == 0) return false;
+
+        //Save current state
+        history[ply * UNDO_SIZE] = lo;
+        history[ply * UNDO_SIZE + 1] = hi;
+        history[ply * UNDO_SIZE + 2] = hash;
+        ply++;
+
+        //Pickup seeds
+        add(cMoveI, -seeds);
+        hash ^= Zobrist.PIT[(cMoveI << 8) | seeds] ^ Zobrist.PIT[cMoveI << 8];
+
+        int ownHouse = player == 1 ? GameState.HOUSE_S : GameState.HOUSE_N;
+
+        //Sow seeds from the sowing table. Both words get all their seeds
+        //at once, and the hash is updated for each pit that got seeds.
+        int k = Sowing.index(player, ambo, seeds);
+        int laps = Sowing.LAPS[k];
+        int order = Sowing.order(player, ambo);
+        if (laps == 0)
+        {
+            for (int j = 0; j < seeds; j++)
+            {
+                int i = Sowing.ORDER[order + j];
+                hash ^= Zobrist.SOW[(i << 8) | get(i)];
+            }
+        }
+        else
+        {
+            int rest = seeds - laps * Sowing.LAP;
+            for (int j = 0; j < Sowing.LAP; j++)
+            {
+                int i = Sowing.ORDER[order + j];
+                int cur = get(i);
+                int added = j < rest ? laps + 1 : laps;
+                hash ^= Zobrist.PIT[(i << 8) | cur] ^ Zobrist.PIT[(i << 8) | (cur + added)];
+            }
+        }
+        lo += Sowing.DELTA_LO[k];
+        hi += Sowing.DELTA_HI[k];
+        cMoveI = Sowing.LAST[k];
+
+        if (Sowing.EXTRA_TURN[k])
+        {
+            //Extra move, same player again
+        }
+        else
+        {
+            //Possible capture of opponent's seeds
+            boolean ownSide = player == 1
+                    ? cMoveI <= GameState.END_S
+                    : cMoveI >= GameState.START_N;
+            if (ownSide && get(cMoveI) == 1)
+            {
+                int oi = 14 - cMoveI;
+                int captured = get(oi);
+                if (captured > 0)
+                {
+                    int house = get(ownHouse);
+                    hash ^= Zobrist.PIT[(ownHouse << 8) | house]
+                            ^ Zobrist.PIT[(ownHouse << 8) | (house + captured + 1)]
+                            ^ Zobrist.PIT[(cMoveI << 8) | 1] ^ Zobrist.PIT[cMoveI << 8]
+                            ^ Zobrist.PIT[(oi << 8) | captured] ^ Zobrist.PIT[oi << 8];
+                    add(ownHouse, captured + 1);
+                    add(cMoveI, -1);
+                    add(oi, -captured);
+                }
+            }
+            lo ^= PLAYER_BIT;
+            hash ^= Zobrist.SIDE;
+        }
+
+        if (sweep())
+        {
+            hash = computeHash();
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes back the last move made with makeMove().
+     */
+    public void unmakeMove()
+    {
+        ply--;
+        lo = history[ply * UNDO_SIZE];
+        hi = history[ply * UNDO_SIZE + 1];
+        hash = history[ply * UNDO_SIZE + 2];
+    }
+
+    /**
+     * Returns the Zobrist hash of the current position.
+     *
+     * @return Position hash
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Computes the Zobrist hash of the current position from scratch.
+     *
+     * @return Position hash
+     */
+    private long computeHash()
+    {
+        long h = (lo & PLAYER_BIT) == 0 ? 0 : Zobrist.SIDE;
+        for (int i = 0; i < 14; i++)
+        {
+            h ^= Zobrist.PIT[(i << 8) | get(i)];
+        }
+        return h;
+    }
+
+    /**
+     * Returns the number of moves that can be taken back.
+     *
+     * @return Number of moves made on this board
+     */
+    public int getPly()
+    {
+        return ply;
+    }
+
+    /**
+     * Sums the ambos stored in bytes 1-6 of a word.
+     *
+     * @param word Low or high board word
+     * @return Total number of seeds in the ambos
+     */
+    private static int sumAmbos(long word)
+    {
+        //No byte sum can exceed 72, so the multiply never carries
+        return (int)(((word & AMBO_MASK) * 0x0101010101010101L) >>> 56);
+    }
+
+    /**
+     * Returns the total number of seeds in the ambos of both players.
+     *
+     * @return Seeds not yet in a house
+     */
+    public int getAmboSeeds()
+    {
+        return sumAmbos(lo) + sumAmbos(hi);
+    }
+
+    /**
+     * Returns the number of seeds in the ambos of a player.
+     *
+     * @param player The player
+     * @return Seeds in the player's ambos
+     */
+    public int getAmboSeeds(int player)
+    {
+        return sumAmbos(player == 1 ? lo : hi);
+    }
+
+    /**
+     * Counts the bytes 1-6 of a word that are not zero. No byte is above
+     * 127, so adding 127 to each sets its high bit only if it is not zero,
+     * and never carries into the next byte.
+     *
+     * @param word Word with ambos in bytes 1-6
+     * @return Number of non-zero ambos
+     */
+    private static int countNonZero(long word)
+    {
+        return Long.bitCount(((word & AMBO_MASK) + 0x7F7F7F7F7F7F7F7FL) & AMBO_HIGH_BITS);
+    }
+
+    /**
+     * Returns the number of legal moves for a player.
+     *
+     * @param player The player
+     * @return Number of non-empty ambos
+     */
+    public int getMobility(int player)
+    {
+        return countNonZero(player == 1 ? lo : hi);
+    }
+
+    /**
+     * Returns the number of moves that would give a player an extra turn,
+     * i.e. ambos where the last seed lands in the own house. An ambo z is
+     * 7 - z steps from the house for both players, so the ambos are
+     * compared to that distance, and the distance plus a full lap, all at
+     * once.
+     *
+     * @param player The player
+     * @return Number of moves giving an extra turn
+     */
+    public int getExtraTurns(int player)
+    {
+        long word = player == 1 ? lo : hi;
+        return 12 - countNonZero(word ^ EXTRA_TURN_SEEDS) - countNonZero(word ^ EXTRA_TURN_LAP_SEEDS);
+    }
+
+    /**
+     * Returns the number of seeds a move of the player to move would
+     * capture, counting the capturing seed.
+     *
+     * @param ambo The move (1-6)
+     * @return Seeds captured, or 0 if the move does not capture
+     */
+    public int getCapture(int ambo)
+    {
+        return getNextPlayer() == 1 ? capture(lo, hi, ambo) : capture(hi, lo, ambo);
+    }
+
+    /**
+     * Finds the seeds a move captures. The last seed captures if it lands
+     * in an empty own ambo and the opposite ambo has seeds. A move of at
+     * most 6 - z seeds stays on the own side. A move of 14 - z to 12 seeds
+     * goes past all the opponent's ambos and lands on the own side again,
+     * in ambo z + seeds - 13, and the opposite ambo has then got a seed on
+     * the way, so the move captures if that ambo was empty. With 13 seeds
+     * the last seed lands in the emptied ambo itself. With more, every own
+     * ambo gets a seed before the last one lands, so nothing is captured.
+     * Ambo j of one player is opposite ambo 7 - j of the other.
+     *
+     * @param own Word with the ambos of the player
+     * @param opp Word with the ambos of the opponent
+     * @param z The move (1-6)
+     * @return Seeds captured, or 0 if the move does not capture
+     */
+    private static int capture(long own, long opp, int z)
+    {
+        int seeds = (int)(own >>> (z << 3)) & 0xFF;
+        if (seeds == 0 || seeds > 13) return 0;
+
+        int land = z + seeds;
+        if (land <= 6)
+        {
+            if (((own >>> (land << 3)) & 0xFF) != 0) return 0;
+            int opposite = (int)(opp >>> ((7 - land) << 3)) & 0xFF;
+            return opposite > 0 ? opposite + 1 : 0;
+        }
+
+        land -= 13;
+        if (land < 1 || (land != z && ((own >>> (land << 3)) & 0xFF) != 0)) return 0;
+        return ((int)(opp >>> ((7 - land) << 3)) & 0xFF) + 2;
+    }
+
+    /**
+     * Returns the largest number of seeds a player could capture with one
+     * move, counting the capturing seed. Also counts moves that go round
+     * the board, see capture().
+     *
+     * @param player The player
+     * @return Seeds in the largest capture, or 0 if there is none
+     */
+    public int getLargestCapture(int player)
+    {
+        long own = player == 1 ? lo : hi;
+        long opp = player == 1 ? hi : lo;
+        int best = 0;
+        for (int z = 1; z <= 6; z++)
+        {
+            int c = capture(own, opp, z);
+            if (c > best)
+            {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Moves all remaining seeds to the houses if one of the players
+     * has no seeds left in the ambos (rule 6).
+     *
+     * @return True if the game has ended, false if not.
+     */
+    private boolean sweep()
+    {
+        if ((lo & AMBO_MASK) == 0)
+        {
+            lo += sumAmbos(hi);
+            hi &= ~AMBO_MASK;
+            return true;
+        }
+        if ((hi & AMBO_MASK) == 0)
+        {
+            hi += sumAmbos(lo);
+            lo &= ~AMBO_MASK;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the Kalaha game has ended. The game ends when one of the
+     * players has 0 seeds in all own ambos. Unlike GameState, the board
+     * is never changed by this call.
+     *
+     * @return True if the game has ended, false if not.
+     */
+    public boolean gameEnded()
+    {
+        return (lo & AMBO_MASK) == 0 || (hi & AMBO_MASK) == 0;
+    }
+
+    /**
+     * Returns the score (number of seeds in the house) for a player.
+     *
+     * @param player The player
+     * @return The score for the specified player
+     */
+    public int getScore(int player)
+    {
+        if (player == 1)
+        {
+            return get(GameState.HOUSE_S);
+        }
+        return get(GameState.HOUSE_N);
+    }
+
+    /**
+     * Returns the winner for this Kalaha game.
+     *
+     * @return Winner (1 or 2), 0 if draw, and -1 if game is still running.
+     */
+    public int getWinner()
+    {
+        if (!gameEnded()) return -1;
+
+        int s1 = getScore(1);
+        int s2 = getScore(2);
+        if (s1 > s2) return 1;
+        if (s2 > s1) return 2;
+        return 0;
+    }
+
+    /**
+     * Returns the board positions as an array, in the same
+     * layout as GameState uses.
+     *
+     * @return Seeds in each of the 14 board positions
+     */
+    public int[] toArray()
+    {
+        int[] pits = new int[14];
+        for (int i = 0; i < 14; i++)
+        {
+            pits[i] = get(i);
+        }
+        return pits;
+    }
+
+    /**
+     * Returns a board string representation for this board, in
+     * the same format as GameState.
+     *
+     * @return Board string representation
+     */
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 14; i++)
+        {
+            str.append(get(i)).append(';');
+        }
+        str.append(getNextPlayer());
+        return str.toString();
+    }
+}
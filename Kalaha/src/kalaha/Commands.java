@@ -17,6 +17,12 @@ public class Commands
      */
     public static final String HELLO = "HELLO";
     
+    /**
+     * Waits in the lobby for an opponent and joins a new game. The reply
+     * is the player number followed by the game id.
+     */
+    public static final String JOIN = "JOIN";
+    
     /**
      * Retrieve the current board.
      */
@@ -36,4 +42,29 @@ public class Commands
      * Retrieve the winner of this game.
      */
     public static final String WINNER = "WINNER";
+    
+    /**
+     * Retrieve the winner, the next player and the board in one reply, so
+     * a polling client needs one request per turn instead of three.
+     */
+    public static final String TURN = "TURN";
+    
+    /**
+     * Subscribes to the events of the game. After this, the server sends
+     * YOUR_TURN and GAME_OVER without being asked, so the client does not
+     * need to poll. The reply is the player number.
+     */
+    public static final String SUBSCRIBE = "SUBSCRIBE";
+    
+    /**
+     * Event sent to a subscribed client when it is its turn, followed by
+     * the board.
+     */
+    public static final String YOUR_TURN = "YOUR_TURN";
+    
+    /**
+     * Event sent to the subscribed clients when the game has ended,
+     * followed by the winner (0 for a draw).
+     */
+    public static final String GAME_OVER = "GAME_OVER";
 }
@@ -0,0 +1,78 @@
+package kalaha;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the blocking connection loops of the server and the clients.
+ *
+ * By default each loop gets a new platform thread, as before. When virtual
+ * threads are enabled, all loops run on one shared virtual thread per task
+ * executor instead, so a single process can hold a very large number of
+ * blocking connections. Virtual threads need Java 21 or later; the
+ * executor is looked up by reflection, so the application still compiles
+ * and runs on older versions, where it keeps using platform threads.
+ */
+public class ConnectionExecutor
+{
+    private static volatile ExecutorService virtualThreads;
+
+    private ConnectionExecutor()
+    {
+    }
+
+    /**
+     * Switches to virtual threads, if the Java version supports them.
+     *
+     * @return True if virtual threads are used, false if platform threads
+     * are still used
+     */
+    public static synchronized boolean enableVirtualThreads()
+    {
+        if (virtualThreads != null)
+        {
+            return true;
+        }
+
+        try
+        {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            virtualThreads = (ExecutorService)m.invoke(null);
+            return true;
+        }
+        catch (Exception ex)
+        {
+            //Not available (before Java 21, or a preview not enabled)
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the loops run on virtual threads.
+     *
+     * @return True if virtual threads are used
+     */
+    public static boolean isVirtual()
+    {
+        return virtualThreads != null;
+    }
+
+    /**
+     * Runs a connection loop on a thread of its own.
+     *
+     * @param r The loop
+     */
+    public static void execute(Runnable r)
+    {
+        ExecutorService v = virtualThreads;
+        if (v != null)
+        {
+            v.execute(r);
+        }
+        else
+        {
+            new Thread(r).start();
+        }
+    }
+}
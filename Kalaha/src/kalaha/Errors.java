@@ -17,6 +17,11 @@ public class Errors
      */
     public static final String GAME_NOT_FULL = "ERROR GAME_NOT_FULL";
     
+    /**
+     * Is returned when a client sends a game command before HELLO or JOIN.
+     */
+    public static final String NO_GAME = "ERROR NO_GAME";
+    
     /**
      * Is returned when an unknown command is sent from the client.
      */
@@ -41,4 +46,10 @@ public class Errors
      * Is returned when a client tries to make a move from an empty ambo.
      */
     public static final String AMBO_EMPTY = "ERROR AMBO_EMPTY";   
+    
+    /**
+     * Is returned when a client tries to make a move or start a new game
+     * after the opponent has left. The game is then won by the client.
+     */
+    public static final String OPPONENT_LEFT = "ERROR OPPONENT_LEFT";
 }
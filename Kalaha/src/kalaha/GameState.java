@@ -48,6 +48,13 @@ public class GameState
     //Next player to make a move
     private int nextPlayer = 1;
     
+    //Zobrist hash of the position
+    private long hash;
+    
+    //Seeds in the ambos of each player
+    private int seedsS;
+    private int seedsN;
+    
     /**
      * Creates a start game state for a new Kalaha
      * game.
@@ -67,6 +74,8 @@ public class GameState
     {
         this.board = board;
         this.nextPlayer = nextPlayer;
+        hash = Zobrist.hash(board, nextPlayer);
+        countSeeds();
     }
     
     /**
@@ -102,6 +111,8 @@ public class GameState
         
             //Player to move
             nextPlayer = Integer.parseInt(tokens[NEXT_PLAYER]);
+            hash = Zobrist.hash(board, nextPlayer);
+            countSeeds();
         }
         catch (Exception ex)
         {
@@ -111,6 +122,26 @@ public class GameState
         }
     }
     
+    /**
+     * Creates a game state from a packed board used by the AI search.
+     * 
+     * @param packed Packed board
+     */
+    public GameState(Board packed)
+    {
+        this(packed.toArray(), packed.getNextPlayer());
+    }
+    
+    /**
+     * Creates a packed board with the same position as this game state.
+     * 
+     * @return Packed board
+     */
+    public Board toBoard()
+    {
+        return new Board(board, nextPlayer);
+    }
+    
     /**
      * Creates a copy of this GameState object.
      * 
@@ -149,6 +180,27 @@ public class GameState
         {
             board[i] = seeds;
         }
+        
+        hash = Zobrist.hash(board, nextPlayer);
+        countSeeds();
+    }
+    
+    /**
+     * Sums the seeds in the ambos of each player. After this the sums are
+     * kept up to date by makeMove().
+     */
+    private void countSeeds()
+    {
+        seedsS = 0;
+        for (int i = START_S; i <= END_S; i++)
+        {
+            seedsS += board[i];
+        }
+        seedsN = 0;
+        for (int i = START_N; i <= END_N; i++)
+        {
+            seedsN += board[i];
+        }
     }
     
     /**
@@ -182,65 +234,70 @@ public class GameState
         //Pickup seeds
         int seeds = board[cMoveI];
         board[cMoveI] = 0;
-        boolean lastIsHouse = false;
+        if (nextPlayer == 1) seedsS -= seeds;
+        else seedsN -= seeds;
+        hash ^= Zobrist.PIT[(cMoveI << 8) | seeds] ^ Zobrist.PIT[cMoveI << 8];
         
-        //Sow seeds
-        while (seeds > 0)
+        //Sow seeds from the sowing table: every pit gets the full laps,
+        //and the first pits in sowing order get one seed more
+        int k = Sowing.index(nextPlayer, ambo + 1, seeds);
+        int laps = Sowing.LAPS[k];
+        int rest = seeds - laps * Sowing.LAP;
+        int order = Sowing.order(nextPlayer, ambo + 1);
+        int sown = laps > 0 ? Sowing.LAP : rest;
+        for (int j = 0; j < sown; j++)
         {
-            //Take a step
-            cMoveI++;
-            if (cMoveI >= 14) cMoveI = 0;
-            
-            if ( (nextPlayer == 1 && cMoveI == HOUSE_N) || (nextPlayer == 2 && cMoveI == HOUSE_S) )
+            int i = Sowing.ORDER[order + j];
+            int added = j < rest ? laps + 1 : laps;
+            hash ^= Zobrist.PIT[(i << 8) | board[i]] ^ Zobrist.PIT[(i << 8) | (board[i] + added)];
+            board[i] += added;
+        }
+        seedsS += Sowing.SOWN_S[k];
+        seedsN += Sowing.SOWN_N[k];
+        
+        //Check special cases for last seed
+        cMoveI = Sowing.LAST[k];
+        boolean lastIsHouse = Sowing.EXTRA_TURN[k];
+        
+        //Check capture
+        boolean capture = false;
+        if (board[cMoveI] == 1)
+        {
+            if (nextPlayer == 1)
             {
-                //Don't sow in opponents house
+                if (cMoveI >= START_S && cMoveI <= END_S) capture = true;
             }
-            else
+            if (nextPlayer == 2)
             {
-                //Sow a seed
-                board[cMoveI]++;
-                seeds--;
+                if (cMoveI >= START_N && cMoveI <= END_N) capture = true;
             }
-            
-            //Check special cases for last seed
-            if (seeds == 0)
+        }
+        
+        //Possible capture of opponent's seeds
+        if (capture)
+        {
+            int oi = getOppositeAmbo(cMoveI);
+            if (board[oi] > 0)
             {
-                //Check for extra move
-                if (nextPlayer == 1 && cMoveI == HOUSE_S) lastIsHouse = true;
-                if (nextPlayer == 2 && cMoveI == HOUSE_N) lastIsHouse = true;
-                
-                //Check capture
-                boolean capture = false;
-                if (board[cMoveI] == 1)
+                int house = nextPlayer == 1 ? HOUSE_S : HOUSE_N;
+                hash ^= Zobrist.PIT[(house << 8) | board[house]]
+                      ^ Zobrist.PIT[(house << 8) | (board[house] + board[cMoveI] + board[oi])]
+                      ^ Zobrist.PIT[(cMoveI << 8) | board[cMoveI]] ^ Zobrist.PIT[cMoveI << 8]
+                      ^ Zobrist.PIT[(oi << 8) | board[oi]] ^ Zobrist.PIT[oi << 8];
+                if (nextPlayer == 1)
                 {
-                    if (nextPlayer == 1)
-                    {
-                        if (cMoveI >= START_S && cMoveI <= END_S) capture = true;
-                    }
-                    if (nextPlayer == 2)
-                    {
-                        if (cMoveI >= START_N && cMoveI <= END_N) capture = true;
-                    }
+                    board[HOUSE_S] += board[cMoveI] + board[oi];
+                    seedsS -= board[cMoveI];
+                    seedsN -= board[oi];
                 }
-                
-                //Possible capture of opponent's seeds
-                if (capture)
+                else if (nextPlayer == 2)
                 {
-                    int oi = getOppositeAmbo(cMoveI);
-                    if (board[oi] > 0)
-                    {
-                        if (nextPlayer == 1)
-                        {
-                            board[HOUSE_S] += board[cMoveI] + board[oi];
-                        }
-                        else if (nextPlayer == 2)
-                        {
-                            board[HOUSE_N] += board[cMoveI] + board[oi];
-                        }
-                        board[cMoveI] = 0;
-                        board[oi] = 0;
-                    }
+                    board[HOUSE_N] += board[cMoveI] + board[oi];
+                    seedsN -= board[cMoveI];
+                    seedsS -= board[oi];
                 }
+                board[cMoveI] = 0;
+                board[oi] = 0;
             }
         }
         
@@ -251,7 +308,7 @@ public class GameState
         
         //Call to update game state in
         //case any player won.
-        gameEnded();
+        sweep();
         
         return true;
     }
@@ -297,6 +354,19 @@ public class GameState
     {
         if (nextPlayer == 1) nextPlayer = 2;
         else nextPlayer = 1;
+        hash ^= Zobrist.SIDE;
+    }
+    
+    /**
+     * Returns the Zobrist hash of this game state. The hash is
+     * updated as moves are made, and is the same as the hash of
+     * the corresponding packed Board.
+     * 
+     * @return Position hash
+     */
+    public long getHash()
+    {
+        return hash;
     }
     
     /**
@@ -326,56 +396,59 @@ public class GameState
     
     /**
      * Checks if the Kalaha game has ended. The game ends when one of the
-     * players has 0 seeds in all own ambos.
+     * players has 0 seeds in all own ambos. If so, the remaining seeds
+     * are moved to the house of their owner (rule 6).
      * 
      * @return True if the game has ended, false if not.
      */
     public boolean gameEnded()
     {
-        int seeds = 0;
+        return sweep();
+    }
+    
+    /**
+     * Checks if the Kalaha game has ended, without changing the game
+     * state. Uses the seed totals kept by makeMove(), so no ambos are
+     * counted.
+     * 
+     * @return True if the game has ended, false if not.
+     */
+    public boolean isTerminal()
+    {
+        return seedsS == 0 || seedsN == 0;
+    }
+    
+    /**
+     * Moves the remaining seeds to the house of their owner if the game
+     * has ended (rule 6).
+     * 
+     * @return True if the game has ended, false if not.
+     */
+    private boolean sweep()
+    {
+        if (!isTerminal()) return false;
         
-        //Player 1 - South
-        for (int i = START_S; i <= END_S; i++)
+        if (seedsS > 0)
         {
-            seeds += board[i];
-        }
-        if (seeds == 0)
-        {
-            //Gather opponents seeds (if any)
-            //Rule 6
-            for (int i = START_N; i <= END_N; i++)
+            board[HOUSE_S] += seedsS;
+            for (int i = START_S; i <= END_S; i++)
             {
-                if (board[i] > 0)
-                {
-                    board[HOUSE_N] += board[i];
-                    board[i] = 0;
-                }
+                board[i] = 0;
             }
-            return true;
+            seedsS = 0;
+            hash = Zobrist.hash(board, nextPlayer);
         }
-        
-        //Player 2 - North
-        seeds = 0;
-        for (int i = START_N; i <= END_N; i++)
+        else if (seedsN > 0)
         {
-            seeds += board[i];
-        }
-        if (seeds == 0)
-        {
-            //Gather opponents seeds (if any)
-            //Rule 6
-            for (int i = START_S; i <= END_S; i++)
+            board[HOUSE_N] += seedsN;
+            for (int i = START_N; i <= END_N; i++)
             {
-                if (board[i] > 0)
-                {
-                    board[HOUSE_S] += board[i];
-                    board[i] = 0;
-                }
+                board[i] = 0;
             }
-            return true;
+            seedsN = 0;
+            hash = Zobrist.hash(board, nextPlayer);
         }
-        
-        return false;
+        return true;
     }
     
     /**
@@ -385,7 +458,7 @@ public class GameState
      */
     public int getWinner()
     {
-        if (gameEnded())
+        if (isTerminal())
         {
             int s1 = getScore(1);
             int s2 = getScore(2);
@@ -459,23 +532,23 @@ public class GameState
     
     /**
      * Returns the score (number of seeds in the house) for a player.
+     * The game state is not changed.
      * 
      * @param player The player
      * @return The score for the specified player
      */
     public int getScore(int player)
     {
-        //In case we have a winner, this method
-        //needs to be called to update the game state.
-        gameEnded();
-        
+        //When the game has ended, the seeds left in the ambos belong
+        //to the house of their owner, even if not moved there yet
+        boolean ended = isTerminal();
         if (player == 1)
         {
-            return board[HOUSE_S];
+            return board[HOUSE_S] + (ended ? seedsS : 0);
         }
         else
         {
-            return board[HOUSE_N];
+            return board[HOUSE_N] + (ended ? seedsN : 0);
         }
     }
     
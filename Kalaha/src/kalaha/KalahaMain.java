@@ -22,13 +22,83 @@ public class KalahaMain
      */
     public static int port = 10101;
     
+    /**
+     * True if the server runs without the GUI.
+     */
+    public static boolean headless = false;
+    
+    /**
+     * Number of NIO event loops of the server, or 0 for one thread per
+     * client.
+     */
+    public static int nioLoops = 0;
+    
     /**
      * Starts the application.
      * 
+     * Options:
+     * -threads N   Number of threads used by the AI search
+     * -tablebase F Endgame tablebase file used by the AI search
+     * -book F      Opening book file used by the AI
+     * -eval E      Evaluation used by the AI search: store (default) or features
+     * -engine E    AI search: minimax (default) or mcts
+     * -headless    Starts the server without the GUI
+     * -nio N       Serves the clients with N NIO event loops instead of
+     *              one thread per client
+     * -virtual     Runs the connections of the server and the clients on
+     *              virtual threads, if the Java version supports them
+     * 
      * @param args the command line arguments
      */
     public static void main(String[] args) 
     {
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-threads") && i + 1 < args.length)
+            {
+                Global.searchThreads = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-tablebase") && i + 1 < args.length)
+            {
+                Global.tablebaseFile = args[++i];
+            }
+            else if (args[i].equals("-book") && i + 1 < args.length)
+            {
+                Global.openBookFile = args[++i];
+            }
+            else if (args[i].equals("-engine") && i + 1 < args.length)
+            {
+                Global.engine = args[++i];
+            }
+            else if (args[i].equals("-nio") && i + 1 < args.length)
+            {
+                nioLoops = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-virtual"))
+            {
+                if (!ConnectionExecutor.enableVirtualThreads())
+                {
+                    System.out.println("Virtual threads are not supported, using platform threads");
+                }
+            }
+            else if (args[i].equals("-headless"))
+            {
+                headless = true;
+            }
+            else if (args[i].equals("-eval") && i + 1 < args.length)
+            {
+                String eval = args[++i];
+                if (eval.equals("store"))
+                {
+                    Global.evaluator = new StoreDifferenceEvaluator();
+                }
+                else if (eval.equals("features"))
+                {
+                    Global.evaluator = new FeatureEvaluator();
+                }
+            }
+        }
+        
         KalahaMain main = new KalahaMain();
     }
     
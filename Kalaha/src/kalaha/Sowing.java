@@ -0,0 +1,127 @@
+package kalaha;
+
+/**
+ * Precomputed sowing of every move, used by GameState and Board instead of
+ * walking the board one seed at a time.
+ *
+ * A move sows its seeds over 13 pits: the ambos and the own house, starting
+ * after the emptied ambo and ending with it. Every pit gets one seed for each
+ * full lap, and the first seeds % 13 pits in sowing order get one more. For
+ * each player, ambo and number of seeds, the tables give the number of laps,
+ * the pit where the last seed lands, whether that gives an extra turn, the
+ * seeds added to each side, and the seeds added to every pit packed in the
+ * same layout as the two Board words.
+ */
+final class Sowing
+{
+    /**
+     * Number of pits a move sows into.
+     */
+    static final int LAP = 13;
+
+    //Table entries per player and ambo, one per seed count
+    private static final int SEED_COUNTS = Zobrist.MAX_SEEDS + 1;
+
+    /**
+     * Pits in sowing order for each player and ambo, LAP per entry. The
+     * last one is the ambo itself.
+     */
+    static final int[] ORDER = new int[2 * 6 * LAP];
+
+    /**
+     * Number of full laps.
+     */
+    static final int[] LAPS = new int[2 * 6 * SEED_COUNTS];
+
+    /**
+     * Pit where the last seed lands.
+     */
+    static final int[] LAST = new int[2 * 6 * SEED_COUNTS];
+
+    /**
+     * True if the last seed lands in the own house.
+     */
+    static final boolean[] EXTRA_TURN = new boolean[2 * 6 * SEED_COUNTS];
+
+    /**
+     * Seeds added to the ambos of player 1 (south) and player 2 (north).
+     */
+    static final int[] SOWN_S = new int[2 * 6 * SEED_COUNTS];
+    static final int[] SOWN_N = new int[2 * 6 * SEED_COUNTS];
+
+    /**
+     * Seeds added to pits 0-6 and 7-13, one byte per pit as in Board.
+     */
+    static final long[] DELTA_LO = new long[2 * 6 * SEED_COUNTS];
+    static final long[] DELTA_HI = new long[2 * 6 * SEED_COUNTS];
+
+    static
+    {
+        for (int player = 1; player <= 2; player++)
+        {
+            int oppHouse = player == 1 ? GameState.HOUSE_N : GameState.HOUSE_S;
+            int ownHouse = player == 1 ? GameState.HOUSE_S : GameState.HOUSE_N;
+
+            for (int ambo = 1; ambo <= 6; ambo++)
+            {
+                int start = (player == 1 ? GameState.START_S : GameState.START_N) + ambo - 1;
+                int base = order(player, ambo);
+                int pit = start;
+                for (int j = 0; j < LAP; j++)
+                {
+                    pit++;
+                    if (pit >= 14) pit = 0;
+                    if (pit == oppHouse) pit++;
+                    ORDER[base + j] = pit;
+                }
+
+                for (int seeds = 1; seeds < SEED_COUNTS; seeds++)
+                {
+                    int k = index(player, ambo, seeds);
+                    LAPS[k] = seeds / LAP;
+                    LAST[k] = ORDER[base + (seeds - 1) % LAP];
+                    EXTRA_TURN[k] = LAST[k] == ownHouse;
+
+                    for (int j = 0; j < LAP; j++)
+                    {
+                        long added = LAPS[k] + (j < seeds % LAP ? 1 : 0);
+                        int p = ORDER[base + j];
+                        if (p >= GameState.START_S && p <= GameState.END_S) SOWN_S[k] += added;
+                        if (p >= GameState.START_N) SOWN_N[k] += added;
+                        if (p < 7) DELTA_LO[k] += added << (p << 3);
+                        else DELTA_HI[k] += added << ((p - 7) << 3);
+                    }
+                }
+            }
+        }
+    }
+
+    private Sowing()
+    {
+    }
+
+    /**
+     * Returns the table index of a move.
+     *
+     * @param player Player making the move
+     * @param ambo The move (1-6)
+     * @param seeds Seeds in the ambo (1-255)
+     * @return Index into LAPS, LAST, EXTRA_TURN, SOWN_S, SOWN_N and the deltas
+     */
+    static int index(int player, int ambo, int seeds)
+    {
+        return ((player - 1) * 6 + ambo - 1) * SEED_COUNTS + seeds;
+    }
+
+    /**
+     * Returns the index of the first pit in ORDER for a move.
+     *
+     * @param player Player making the move
+     * @param ambo The move (1-6)
+     * @return Index into ORDER
+     */
+    static int order(int player, int ambo)
+    {
+        return ((player - 1) * 6 + ambo - 1) * LAP;
+    }
+}
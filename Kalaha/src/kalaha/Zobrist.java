@@ -0,0 +1,95 @@
+package kalaha;
+
+/**
+ * Zobrist keys for hashing Kalaha positions. A position hash is the XOR
+ * of one key per board position and seed count, plus a side key when
+ * player 2 is to move.
+ *
+ * The keys are generated from a fixed seed, so a hash is the same in
+ * every run and can be stored in files.
+ */
+public final class Zobrist
+{
+    /**
+     * Highest seed count a board position can hold.
+     */
+    public static final int MAX_SEEDS = 255;
+
+    /**
+     * Key XORed into the hash when player 2 is to move.
+     */
+    public static final long SIDE;
+
+    //Key for each board position and seed count, indexed by (index << 8) | seeds
+    static final long[] PIT = new long[14 << 8];
+
+    //Change of the hash when one seed is sown, indexed as PIT
+    static final long[] SOW = new long[14 << 8];
+
+    static
+    {
+        long state = 0x4B414C414841L;
+        for (int i = 0; i < PIT.length; i++)
+        {
+            state += 0x9E3779B97F4A7C15L;
+            PIT[i] = mix(state);
+        }
+        state += 0x9E3779B97F4A7C15L;
+        SIDE = mix(state);
+
+        for (int i = 0; i < 14; i++)
+        {
+            for (int s = 0; s < MAX_SEEDS; s++)
+            {
+                SOW[(i << 8) | s] = PIT[(i << 8) | s] ^ PIT[(i << 8) | (s + 1)];
+            }
+        }
+    }
+
+    private Zobrist()
+    {
+
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     *
+     * @param z Value to mix
+     * @return Mixed value
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the key for a number of seeds in a board position.
+     *
+     * @param index Board index (0-13)
+     * @param seeds Number of seeds
+     * @return Zobrist key
+     */
+    public static long key(int index, int seeds)
+    {
+        return PIT[(index << 8) | seeds];
+    }
+
+    /**
+     * Computes the hash of a position from scratch.
+     *
+     * @param board Seeds in each of the 14 board positions
+     * @param nextPlayer Next player to make a move
+     * @return Position hash
+     */
+    public static long hash(int[] board, int nextPlayer)
+    {
+        long h = nextPlayer == 2 ? SIDE : 0;
+        for (int i = 0; i < 14; i++)
+        {
+            h ^= PIT[(i << 8) | board[i]];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,28 @@
+package match;
+
+import kalaha.GameState;
+
+/**
+ * A player that can be used by the MatchRunner. A bot chooses moves
+ * directly from the game state, without a server or a GUI.
+ *
+ * A bot is used by one thread at a time, but may be reused for many games.
+ */
+public interface Bot
+{
+    /**
+     * Chooses a move.
+     *
+     * @param state Current game state, must not be changed
+     * @return A legal move (1-6)
+     */
+    public int getMove(GameState state);
+
+    /**
+     * Called before each new game, so the bot can clear what it knows
+     * about the previous game.
+     *
+     * @param seed Seed for bots that play random moves
+     */
+    public void newGame(long seed);
+}
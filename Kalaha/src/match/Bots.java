@@ -0,0 +1,146 @@
+package match;
+
+import ai.MiniMax;
+import ai.MonteCarloSearch;
+import ai.TranspositionTable;
+import java.util.Random;
+import kalaha.GameState;
+
+/**
+ * Creates the bots that can play in the MatchRunner. A bot is given by a
+ * name and an optional parameter after a colon:
+ *
+ * random        Random legal moves, as the RandomClient
+ * bad           The first legal move, as the BadClient
+ * minimax:D     MiniMax searching to depth D (default 8)
+ * mcts:P        Monte Carlo tree search with P playouts per move (default 10000)
+ *
+ * The searching bots are limited by depth and playouts rather than time,
+ * so the results do not depend on the load of the machine.
+ */
+public class Bots
+{
+    /**
+     * Transposition table size of a MiniMax bot. Each thread has its own.
+     */
+    public static final int TT_SIZE_MB = 4;
+
+    /**
+     * Node pool size of a Monte Carlo bot.
+     */
+    public static final int MCTS_NODES = 1 << 16;
+
+    private Bots()
+    {
+    }
+
+    /**
+     * Creates a new bot.
+     *
+     * @param spec Name and parameter of the bot, e.g. minimax:6
+     * @return The bot
+     * @throws IllegalArgumentException If the bot is unknown
+     */
+    public static Bot create(String spec)
+    {
+        String[] tokens = spec.split(":");
+        String name = tokens[0];
+        int param = tokens.length > 1 ? Integer.parseInt(tokens[1]) : -1;
+
+        if (name.equals("random")) return new RandomBot();
+        if (name.equals("bad")) return new BadBot();
+        if (name.equals("minimax")) return new MiniMaxBot(param > 0 ? param : 8);
+        if (name.equals("mcts")) return new MonteCarloBot(param > 0 ? param : 10000);
+        throw new IllegalArgumentException("Unknown bot: " + spec);
+    }
+
+    /**
+     * Makes random legal moves.
+     */
+    private static class RandomBot implements Bot
+    {
+        private final Random rnd = new Random();
+
+        public int getMove(GameState state)
+        {
+            int z;
+            do
+            {
+                z = 1 + rnd.nextInt(6);
+            } while (!state.moveIsPossible(z));
+            return z;
+        }
+
+        public void newGame(long seed)
+        {
+            rnd.setSeed(seed);
+        }
+    }
+
+    /**
+     * Makes the first legal move.
+     */
+    private static class BadBot implements Bot
+    {
+        public int getMove(GameState state)
+        {
+            int z = 1;
+            while (!state.moveIsPossible(z)) z++;
+            return z;
+        }
+
+        public void newGame(long seed)
+        {
+        }
+    }
+
+    /**
+     * Searches with MiniMax to a fixed depth.
+     */
+    private static class MiniMaxBot implements Bot
+    {
+        private final TranspositionTable table = new TranspositionTable(TT_SIZE_MB);
+        private final MiniMax miniMax = new MiniMax(table);
+        private final int depth;
+
+        MiniMaxBot(int depth)
+        {
+            this.depth = depth;
+        }
+
+        public int getMove(GameState state)
+        {
+            return miniMax.findBestMove(state.toBoard(), depth, Long.MAX_VALUE);
+        }
+
+        public void newGame(long seed)
+        {
+            table.clear();
+        }
+    }
+
+    /**
+     * Searches with Monte Carlo tree search for a fixed number of playouts.
+     */
+    private static class MonteCarloBot implements Bot
+    {
+        private final MonteCarloSearch mcts = new MonteCarloSearch(MCTS_NODES);
+        private final int playouts;
+
+        MonteCarloBot(int playouts)
+        {
+            this.playouts = playouts;
+        }
+
+        public int getMove(GameState state)
+        {
+            return mcts.findBestMove(state.toBoard(), Long.MAX_VALUE, playouts);
+        }
+
+        public void newGame(long seed)
+        {
+            mcts.clear();
+            mcts.setSeed(seed);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package match;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import kalaha.GameState;
+
+/**
+ * Plays bots against each other in the same process, without the server,
+ * the GUI or any sockets, and prints the results. The games are played in
+ * parallel on a thread pool, and the bots play every other game as south,
+ * so neither bot gets the first move more often.
+ *
+ * Usage: java match.MatchRunner [bot 1] [bot 2] [games] [threads]
+ *
+ * The bots are given as in Bots.create, e.g. minimax:6 or random.
+ */
+public class MatchRunner
+{
+    private final String spec1;
+    private final String spec2;
+
+    //Each thread has its own bots, since a bot can not be shared
+    private final ThreadLocal<Bot[]> bots = new ThreadLocal<Bot[]>()
+    {
+        @Override
+        protected Bot[] initialValue()
+        {
+            return new Bot[] {Bots.create(spec1), Bots.create(spec2)};
+        }
+    };
+
+    private final AtomicLong moves = new AtomicLong();
+
+    /**
+     * Creates a new match runner.
+     *
+     * @param spec1 First bot
+     * @param spec2 Second bot
+     */
+    public MatchRunner(String spec1, String spec2)
+    {
+        this.spec1 = spec1;
+        this.spec2 = spec2;
+
+        //Checks the bots before any game is started
+        Bots.create(spec1);
+        Bots.create(spec2);
+    }
+
+    /**
+     * Plays one game between the two bots of the calling thread.
+     *
+     * @param game Game number, decides the sides and the random seeds
+     * @return Winner seen from the first bot: 1 if it won, 2 if it lost, 0 for a draw
+     */
+    public int playGame(int game)
+    {
+        Bot[] b = bots.get();
+        int firstSide = game % 2 == 0 ? 1 : 2;
+        Bot south = firstSide == 1 ? b[0] : b[1];
+        Bot north = firstSide == 1 ? b[1] : b[0];
+        south.newGame(2L * game);
+        north.newGame(2L * game + 1);
+
+        GameState state = new GameState();
+        int cnt = 0;
+        while (!state.isTerminal())
+        {
+            Bot bot = state.getNextPlayer() == 1 ? south : north;
+            int move = bot.getMove(state);
+            if (!state.makeMove(move))
+            {
+                throw new IllegalStateException("Illegal move " + move + " in " + state);
+            }
+            cnt++;
+        }
+        moves.addAndGet(cnt);
+
+        int w = state.getWinner();
+        if (w == 0) return 0;
+        return w == firstSide ? 1 : 2;
+    }
+
+    /**
+     * Returns the number of moves made in all games so far.
+     *
+     * @return Move count
+     */
+    public long getMoves()
+    {
+        return moves.get();
+    }
+
+    /**
+     * Runs the match.
+     *
+     * @param args The two bots, number of games and number of threads
+     * @throws Exception If a game fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String spec1 = args.length > 0 ? args[0] : "minimax:6";
+        String spec2 = args.length > 1 ? args[1] : "random";
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        final MatchRunner runner = new MatchRunner(spec1, spec2);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>(games);
+
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++)
+        {
+            final int game = g;
+            results.add(pool.submit(new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    return runner.playGame(game);
+                }
+            }));
+        }
+
+        int[] count = new int[3];
+        for (Future<Integer> f : results)
+        {
+            count[f.get()]++;
+        }
+        long time = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.println(spec1 + " vs " + spec2 + ", " + games + " games on " + threads + " threads");
+        System.out.printf("%s: %d wins, %d draws, %d losses (%.1f%%)%n", spec1, count[1], count[0], count[2],
+                (count[1] + count[0] * 0.5) * 100.0 / Math.max(games, 1));
+        System.out.printf("%.1f games/s, %.0f moves/s%n", games * 1e9 / time, runner.getMoves() * 1e9 / time);
+    }
+}
@@ -0,0 +1,61 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of equally sized byte buffers, shared by the NIO event loops.
+ * Buffers are created when the pool is empty, and are kept for reuse when
+ * they are released.
+ */
+public class BufferPool
+{
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final int bufferSize;
+
+    /**
+     * Creates a new, empty pool.
+     *
+     * @param bufferSize Size of each buffer in bytes
+     */
+    public BufferPool(int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool.
+     *
+     * @return Buffer
+     */
+    public ByteBuffer acquire()
+    {
+        ByteBuffer b = free.poll();
+        if (b == null)
+        {
+            return ByteBuffer.allocate(bufferSize);
+        }
+        b.clear();
+        return b;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used after this.
+     *
+     * @param b Buffer
+     */
+    public void release(ByteBuffer b)
+    {
+        free.offer(b);
+    }
+
+    /**
+     * Returns the size of the buffers.
+     *
+     * @return Size in bytes
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+}
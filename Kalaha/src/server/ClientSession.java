@@ -0,0 +1,173 @@
+package server;
+
+import kalaha.*;
+
+/**
+ * The server side of one client connection: the game the client has
+ * joined, its player number, and the handling of its commands. A session
+ * does not know how the commands arrive, so the same session is used by
+ * the thread per client server and by the event loops of the NIO server.
+ *
+ * A session is used by one thread at a time. Game events are pushed
+ * directly to the transport, see EventSink.
+ */
+public class ClientSession
+{
+    private final KalahaServer server;
+    private final GameRegistry games;
+    private final EventSink transport;
+    private Match match;
+    private int iAmPlayer;
+
+    /**
+     * Creates a new session for a client that has just connected.
+     *
+     * @param server The game server
+     * @param transport Writes pushed events to the connection
+     */
+    public ClientSession(KalahaServer server, EventSink transport)
+    {
+        this.server = server;
+        this.transport = transport;
+        games = server.getGames();
+        iAmPlayer = -1;
+    }
+
+    /**
+     * Executes a command from the client.
+     *
+     * @param cmd Command string
+     * @return Server reply
+     */
+    public String execute(String cmd)
+    {
+        if (cmd.startsWith(Commands.HELLO))
+        {
+            if (match == null)
+            {
+                Match m = games.getMainGame();
+                int player = m.addPlayer();
+                if (player == -1)
+                {
+                    return Errors.GAME_FULL;
+                }
+                match = m;
+                iAmPlayer = player;
+            }
+            return Commands.HELLO + " " + iAmPlayer;
+        }
+        else if (cmd.startsWith(Commands.JOIN))
+        {
+            if (match == null)
+            {
+                GameRegistry.Seat seat = games.join();
+                match = seat.match;
+                iAmPlayer = seat.player;
+            }
+            return Commands.JOIN + " " + iAmPlayer + " " + match.getId();
+        }
+        else if (match == null)
+        {
+            if (cmd.startsWith(Commands.BOARD) || cmd.startsWith(Commands.MOVE)
+                    || cmd.startsWith(Commands.NEXT_PLAYER) || cmd.startsWith(Commands.NEW_GAME)
+                    || cmd.startsWith(Commands.WINNER) || cmd.startsWith(Commands.SUBSCRIBE)
+                    || cmd.startsWith(Commands.TURN))
+            {
+                return Errors.NO_GAME;
+            }
+            return Errors.CMD_NOT_FOUND;
+        }
+        else if (cmd.startsWith(Commands.BOARD))
+        {
+            return match.getBoard();
+        }
+        else if (cmd.startsWith(Commands.MOVE))
+        {
+            return makeMove(cmd);
+        }
+        else if (cmd.startsWith(Commands.NEXT_PLAYER))
+        {
+            return match.getNextPlayer();
+        }
+        else if (cmd.startsWith(Commands.NEW_GAME))
+        {
+            return match.newGame();
+        }
+        else if (cmd.startsWith(Commands.WINNER))
+        {
+            return match.getWinner();
+        }
+        else if (cmd.startsWith(Commands.TURN))
+        {
+            return match.getTurn();
+        }
+        else if (cmd.startsWith(Commands.SUBSCRIBE))
+        {
+            match.subscribe(iAmPlayer, transport);
+            return Commands.SUBSCRIBE + " " + iAmPlayer;
+        }
+        return Errors.CMD_NOT_FOUND;
+    }
+
+    /**
+     * Tries to make the move a requested from the client.
+     *
+     * @param cmd Move command string
+     * @return Server reply
+     */
+    private String makeMove(String cmd)
+    {
+        if (!match.isFull())
+        {
+            return Errors.GAME_NOT_FULL;
+        }
+
+        String tokens[] = cmd.split(" ");
+        int ambo;
+        int player;
+
+        if(tokens.length != 3)
+        {
+            return Errors.INVALID_PARAMS;
+        }
+
+        try
+        {
+            ambo = Integer.parseInt(tokens[1]);
+            player = Integer.parseInt(tokens[2]);
+        }
+        catch(NumberFormatException ex)
+        {
+            return Errors.INVALID_PARAMS;
+        }
+
+        return match.makeMove(ambo, player);
+    }
+
+    /**
+     * Called when the client has disconnected. Leaves the game the client
+     * was in.
+     */
+    public void close()
+    {
+        if (match != null)
+        {
+            games.leave(match, iAmPlayer);
+            if (match == games.getMainGame())
+            {
+                server.log("Client " + iAmPlayer + " closed");
+            }
+            match = null;
+        }
+    }
+
+    /**
+     * Returns the player number of the client.
+     *
+     * @return Player number, or -1 if the client has not joined a game
+     */
+    public int getPlayer()
+    {
+        return iAmPlayer;
+    }
+}
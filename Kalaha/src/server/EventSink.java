@@ -0,0 +1,26 @@
+package server;
+
+/**
+ * Receives the events a game pushes to a subscribed client, see
+ * Commands.SUBSCRIBE. Implemented by the transports, which write the
+ * events to the connection.
+ */
+public interface EventSink
+{
+    /**
+     * Queues an event for the client. Called from any thread with the game
+     * locked, so it must not block or write to the connection. An event
+     * queued while a command of the client is executed is written after
+     * the reply to the command, so the client always gets the reply first,
+     * even when the opponent answers an event at once.
+     *
+     * @param event Event line, without line break
+     */
+    public void push(String event);
+
+    /**
+     * Writes the queued events to the connection, or has them written.
+     * Called with the game unlocked.
+     */
+    public void deliver();
+}
@@ -0,0 +1,144 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of all games hosted by the server.
+ *
+ * Game 0 is the game shown in the server GUI, which clients join with
+ * HELLO as before. Clients that send JOIN wait in the lobby, and every two
+ * of them are paired into a new game. A game is removed once all of its
+ * players have left.
+ *
+ * Joining and leaving are done with the registry locked, so a client never
+ * joins a game that is being removed. The game events they cause are
+ * written after the registry is unlocked.
+ */
+public class GameRegistry
+{
+    private final ConcurrentHashMap<Integer, Match> games = new ConcurrentHashMap<Integer, Match>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Match mainGame;
+
+    //Game with one player waiting for an opponent, guarded by the registry
+    private Match waiting;
+
+    /**
+     * Creates a new registry.
+     *
+     * @param g GUI showing the main game, or null if there is none
+     */
+    public GameRegistry(ServerGUI g)
+    {
+        mainGame = new Match(nextId.getAndIncrement(), g);
+        games.put(mainGame.getId(), mainGame);
+    }
+
+    /**
+     * Returns the game shown in the server GUI.
+     *
+     * @return Main game
+     */
+    public Match getMainGame()
+    {
+        return mainGame;
+    }
+
+    /**
+     * Pairs a client into a game from the lobby and adds it as a player.
+     * The first of two clients gets a new game, the second gets the same
+     * game.
+     *
+     * @return The game and the player number of the client
+     */
+    public Seat join()
+    {
+        Seat seat;
+        synchronized (this)
+        {
+            Match m = waiting;
+            if (m == null)
+            {
+                m = new Match(nextId.getAndIncrement(), null);
+                games.put(m.getId(), m);
+                waiting = m;
+            }
+            else
+            {
+                waiting = null;
+            }
+            seat = new Seat(m, m.add());
+        }
+        seat.match.deliver();
+        return seat;
+    }
+
+    /**
+     * Removes a player that has disconnected from its game, and removes
+     * the game when all of its players have left. If the game was in
+     * progress, the other player wins.
+     *
+     * @param m Game the player was in
+     * @param player Player number
+     */
+    public void leave(Match m, int player)
+    {
+        synchronized (this)
+        {
+            if (m.removePlayer(player) && m != mainGame)
+            {
+                if (waiting == m)
+                {
+                    waiting = null;
+                }
+                games.remove(m.getId());
+            }
+        }
+        m.deliver();
+    }
+
+    /**
+     * Returns a game by its id.
+     *
+     * @param id Game id
+     * @return The game, or null if there is no such game
+     */
+    public Match get(int id)
+    {
+        return games.get(id);
+    }
+
+    /**
+     * Returns the number of games currently hosted, including games
+     * waiting for a second player.
+     *
+     * @return Game count
+     */
+    public int size()
+    {
+        return games.size();
+    }
+
+    /**
+     * A game joined from the lobby, and the player number in it.
+     */
+    public static class Seat
+    {
+        /**
+         * The game.
+         */
+        public final Match match;
+
+        /**
+         * Player number (1 or 2).
+         */
+        public final int player;
+
+        Seat(Match match, int player)
+        {
+            this.match = match;
+            this.player = player;
+        }
+    }
+}
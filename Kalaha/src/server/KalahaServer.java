@@ -2,23 +2,39 @@ package server;
 
 import java.io.*;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import kalaha.*;
 
 /**
  * Creates and starts a Kalaha game server.
  * 
+ * The server hosts any number of games at the same time. Game 0 is shown
+ * in the GUI and is joined with HELLO by the first two clients. Clients
+ * that send JOIN are paired into new games, see GameRegistry.
+ * 
+ * By default each client gets its own thread. With KalahaMain.nioLoops
+ * set, the clients are served by a few NIO event loops instead, see
+ * NioServer.
+ * 
  * @author Johan Hagelbäck
  */
 public class KalahaServer implements Runnable
 {
+    //Characters searched for the end of the next pipelined command
+    private static final int LOOKAHEAD = 1024;
+    
     private ServerGUI g;
     private static KalahaServer instance;
     
-    private GameState game;
+    private GameRegistry games;
     
     private ServerSocket ssocket;
-    private int nextClient;
-    private ClientThread[] clients;
+    private NioServer nio;
+    private Set<ClientThread> clients;
     private boolean running;
     
     public static KalahaServer getInstance()
@@ -43,22 +59,31 @@ public class KalahaServer implements Runnable
      */
     public void start()
     {
-        nextClient = 0;
-	game = new GameState();
-	g = ServerGUI.getInstance();
+        if (!KalahaMain.headless)
+        {
+            g = ServerGUI.getInstance();
+        }
+        games = new GameRegistry(g);
+        clients = Collections.newSetFromMap(new ConcurrentHashMap<ClientThread, Boolean>());
         
         try
-	{
-            g.addText("Starting server at port " + KalahaMain.port);
+        {
+            log("Starting server at port " + KalahaMain.port);
+            if (KalahaMain.nioLoops > 0)
+            {
+                nio = new NioServer(this, KalahaMain.nioLoops);
+                nio.start(KalahaMain.port);
+                log("Server started successfully with " + KalahaMain.nioLoops + " event loops");
+                return;
+            }
             ssocket = new ServerSocket(KalahaMain.port);
-            g.addText("Server started successfully");
-            clients = new ClientThread[2];
-	}
-	catch(Exception ex)
-	{
-            g.addText("ERROR: Could not start server on port " + KalahaMain.port + ": " + ex.getMessage());
+            log("Server started successfully");
+        }
+        catch(Exception ex)
+        {
+            log("ERROR: Could not start server on port " + KalahaMain.port + ": " + ex.getMessage());
             return;
-	}
+        }
         
         //Start the client listener thread
         Thread thr = new Thread(this);
@@ -73,39 +98,55 @@ public class KalahaServer implements Runnable
         try
         {
             running = false;
-            ssocket.close();
-            
-            if (clients[0] != null) 
+            if (nio != null)
             {
-                clients[0].stop();
-                clients[0] = null;
+                nio.stop();
+                nio = null;
+                log("Game server stopped");
+                return;
             }
-            if (clients[1] != null)
+            ssocket.close();
+            
+            for (ClientThread c : clients)
             {
-                clients[1].stop();
-                clients[1] = null;
+                c.stop();
             }
+            clients.clear();
         }
         catch (Exception ex)
         {
-            g.addText("Error closing game server: " + ex.getMessage());
+            log("Error closing game server: " + ex.getMessage());
             return;
         }
-        g.addText("Game server stopped");
+        log("Game server stopped");
     }
     
     /**
-     * Checks of both player have connect to this game.
+     * Returns the games hosted by the server.
      * 
-     * @return True if both players are connected, false otherwise.
+     * @return Game registry
      */
-    public boolean gameIsFull()
+    public GameRegistry getGames()
     {
-        if (clients[0] != null && clients[1] != null)
+        return games;
+    }
+    
+    /**
+     * Shows a message in the GUI, or on the console if the server is
+     * headless.
+     * 
+     * @param txt The message
+     */
+    void log(String txt)
+    {
+        if (g != null)
+        {
+            g.addText(txt);
+        }
+        else
         {
-            return true;
+            System.out.println(txt);
         }
-        return false;
     }
 
     /**
@@ -121,24 +162,15 @@ public class KalahaServer implements Runnable
             try
             {
                 Socket mSocket = ssocket.accept();
-                if (nextClient == 0) 
-                {
-                    clients[0] = new ClientThread(mSocket, 1);
-                }
-                else if (nextClient == 1)
-                {
-                    clients[1] = new ClientThread(mSocket, 2);
-                }
-                else
-                {
-                    //No more players allowed. Close socket.
-                    mSocket.close();
-                }
-                nextClient++;
+                mSocket.setTcpNoDelay(true);
+                clients.add(new ClientThread(mSocket));
             }
             catch (Exception ex)
             {
-                g.addText("Error starting client " + (nextClient + 1) + ": " + ex.getMessage());
+                if (running)
+                {
+                    log("Error starting client: " + ex.getMessage());
+                }
                 running = false;
             }
         }
@@ -147,28 +179,34 @@ public class KalahaServer implements Runnable
     /**
      * Thread class for a client (player).
      */
-    private class ClientThread implements Runnable
+    private class ClientThread implements Runnable, EventSink
     {
         private Socket socket;
-        private boolean running;
-        private ServerGUI g;
-        private int iAmPlayer;
+        private volatile PrintWriter out;
+        private volatile boolean running;
+        
+        //Lines to write, and events pushed while a command is executed.
+        //Guarded by this, but written with no lock held, by the thread
+        //reading the commands or by the event writer of this client.
+        private boolean busy;
+        private boolean writing;
+        private boolean flushWanted;
+        private final List<String> lines = new ArrayList<String>();
+        private final List<String> pending = new ArrayList<String>();
+        private final ClientSession session;
         
         /**
          * Creates and starts a new client thread.
          * 
          * @param socket Network socket
-         * @param iAmPlayer Player number for this client (1 or 2)
          */
-        public ClientThread(Socket socket, int iAmPlayer)
+        public ClientThread(Socket socket)
         {
             this.socket = socket;
-            this.iAmPlayer = iAmPlayer;
-            g = ServerGUI.getInstance();
+            session = new ClientSession(KalahaServer.this, this);
             
             running = true;
-            Thread thr = new Thread(this);
-            thr.start();
+            ConnectionExecutor.execute(this);
         }
         
         /**
@@ -178,176 +216,252 @@ public class KalahaServer implements Runnable
         {
             try
             {
-                running = false;
+                synchronized (this)
+                {
+                    running = false;
+                    notifyAll();
+                }
                 socket.close();
             }
             catch (Exception ex)
             {
-                g.addText("Error closing client " + iAmPlayer + ": " + ex.getMessage());
-                return;
+                log("Error closing client " + session.getPlayer() + ": " + ex.getMessage());
             }
-            g.addText("Client " + iAmPlayer + " closed");
         }
         
         /**
-         * Thread for listening to commands sent from the connected client.
+         * Queues an event, after the reply if a command is executed.
+         * 
+         * @param event Event line
          */
-        public void run()
+        public synchronized void push(String event)
         {
-            running = true;
-            while (running)
+            if (busy)
+            {
+                pending.add(event);
+            }
+            else
             {
-                try
+                lines.add(event);
+            }
+        }
+        
+        /**
+         * Has the queued events written by the event writer of this client.
+         * Called by the thread of the other player, which must not wait
+         * for this client to read.
+         */
+        public synchronized void deliver()
+        {
+            flushWanted = true;
+            notifyAll();
+        }
+        
+        /**
+         * Writes the queued lines to the socket, with no lock held. If
+         * another thread is already writing, it writes these lines too.
+         * 
+         * @param flush True if the lines shall be sent now
+         */
+        private void write(boolean flush)
+        {
+            synchronized (this)
+            {
+                flushWanted |= flush;
+                if (writing || out == null)
                 {
-                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                    String cmd = in.readLine();
-                    String reply;
-
-                    while(cmd != null)
+                    return;
+                }
+                writing = true;
+            }
+            drain();
+        }
+        
+        /**
+         * Writes events to the socket when they are delivered, until the
+         * connection is closed. Runs on a thread of its own, so a blocking
+         * write only holds up this client.
+         */
+        private void writeEvents()
+        {
+            while (true)
+            {
+                synchronized (this)
+                {
+                    while (running && (writing || !flushWanted))
                     {
-                        if (cmd.startsWith(Commands.HELLO))
+                        try
                         {
-                            reply = Commands.HELLO + " " + iAmPlayer;
-                            g.addText("Client " + iAmPlayer + " connected");
-                            
-                            if (iAmPlayer == 2)
-                            {
-                                //Both players connected. Update board.
-                                g.updateBoard(game);
-                            }
+                            wait();
                         }
-                        else if (cmd.startsWith(Commands.BOARD))
+                        catch (InterruptedException ex)
                         {
-                            reply = game.toString();
+                            return;
                         }
-                        else if (cmd.startsWith(Commands.MOVE))
-                        {
-                            if (!gameIsFull())
-                            {
-                                reply = Errors.GAME_NOT_FULL;
-                            }
-                            else
-                            {
-                                reply = makeMove(cmd);
-                            }
-                        }
-                        else if (cmd.startsWith(Commands.NEXT_PLAYER))
-                        {
-                            if (!gameIsFull())
-                            {
-                                reply = Errors.GAME_NOT_FULL;
-                            }
-                            else
-                            {
-                                reply = "" + game.getNextPlayer();
-                            }
-                        }
-                        else if (cmd.startsWith(Commands.NEW_GAME))
-                        {
-                            if (!gameIsFull())
-                            {
-                                reply = Errors.GAME_NOT_FULL;
-                            }
-                            else
-                            {
-                                g.addText("New game");
-                                game = new GameState();
-                                reply = game.toString();
-                            }
-                        }
-                        else if (cmd.startsWith(Commands.WINNER))
-                        {
-                            if (!gameIsFull())
-                            {
-                                reply = Errors.GAME_NOT_FULL;
-                            }
-                            else
-                            {
-                                reply = "" + game.getWinner();
-                            }
-                        }
-                        else
-                        {
-                            reply = Errors.CMD_NOT_FOUND;
-                        }
-                        
-                        out.println(reply);
-                        
-                        //Read new line
-                        cmd = in.readLine();
                     }
+                    if (!running)
+                    {
+                        return;
+                    }
+                    writing = true;
                 }
-                catch(Exception ex)
+                drain();
+            }
+        }
+        
+        /**
+         * Writes the queued lines until none are left. The caller has set
+         * writing, and it is cleared when done.
+         */
+        private void drain()
+        {
+            List<String> batch = new ArrayList<String>();
+            while (true)
+            {
+                boolean doFlush;
+                synchronized (this)
                 {
-                    g.addText("Connection error: " + ex.getMessage());
+                    if (lines.isEmpty() && !flushWanted)
+                    {
+                        writing = false;
+                        notifyAll();
+                        return;
+                    }
+                    batch.addAll(lines);
+                    lines.clear();
+                    doFlush = flushWanted;
+                    flushWanted = false;
+                }
+                for (String line : batch)
+                {
+                    out.println(line);
+                }
+                batch.clear();
+                if (doFlush)
+                {
+                    out.flush();
                 }
             }
-            
-            running = false;
         }
         
         /**
-         * Tries to make the move a requested from the client.
+         * Executes a command and writes the reply, followed by the events
+         * pushed meanwhile. No lock is held while the command is executed
+         * or the reply is written, so a game pushing an event never waits
+         * for them, and events delivered meanwhile are written with the
+         * reply.
          * 
-         * @param cmd Move command string
-         * @return Server reply
+         * @param cmd Command string
+         * @param flush True if the reply shall be sent now, false if more
+         * commands are waiting and it can be sent with their replies
          */
-        public String makeMove(String cmd)
+        private void reply(String cmd, boolean flush)
         {
-            String tokens[] = cmd.split(" ");
-            int ambo;
-            int player;
-
-            if(tokens.length != 3)
+            synchronized (this)
             {
-                return Errors.INVALID_PARAMS;
+                busy = true;
             }
-
+            String reply = session.execute(cmd);
+            synchronized (this)
+            {
+                lines.add(reply);
+                lines.addAll(pending);
+                pending.clear();
+                busy = false;
+            }
+            write(flush);
+        }
+        
+        /**
+         * Thread for listening to commands sent from the connected client.
+         * The thread ends when the client disconnects.
+         * 
+         * A client can send several commands without waiting for the
+         * replies. They are answered in order, and the replies are sent
+         * together once all complete commands that have arrived are
+         * executed. The replies are always sent before a read that may
+         * block.
+         */
+        public void run()
+        {
             try
             {
-                ambo = Integer.parseInt(tokens[1]);
-                player = Integer.parseInt(tokens[2]);
+                out = new PrintWriter(socket.getOutputStream(), false);
+                ConnectionExecutor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        writeEvents();
+                    }
+                });
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+                String cmd = in.readLine();
+                while(cmd != null && running)
+                {
+                    reply(cmd, !lineWaiting(in));
+                    
+                    //Read new line
+                    cmd = in.readLine();
+                }
             }
-            catch(NumberFormatException ex)
+            catch(Exception ex)
             {
-                return Errors.INVALID_PARAMS;
+                if (running)
+                {
+                    log("Connection error: " + ex.getMessage());
+                }
             }
             
-            //Check if move is valid
-            if (ambo < 1 || ambo > 6)
+            synchronized (this)
             {
-                return Errors.INVALID_MOVE;
+                running = false;
+                notifyAll();
             }
-
-            //Check if the correct player is
-            //making the move
-            if(player != game.getNextPlayer())
+            try
             {
-                return Errors.WRONG_PLAYER;
+                socket.close();
             }
-
-            //Check if the ambo is empty
-            if(game.getSeeds(ambo, player) == 0)
+            catch (IOException ex)
             {
-                return Errors.AMBO_EMPTY;
+                //Already closed
             }
-
-            //Make the move!
-            game.makeMove(ambo);
-            g.addText("Move " + ambo + " by Player " + player);
-            g.updateBoard(game);
-
-            if(game.gameEnded())
+            session.close();
+            clients.remove(this);
+        }
+        
+        /**
+         * Checks if a complete command line has already arrived, so that
+         * the next readLine() does not block. Nothing is consumed.
+         * 
+         * @param in Input from the client
+         * @return True if a complete line is waiting, false if not or if
+         * the line is too long to look for its end
+         * @throws IOException If the input can not be read
+         */
+        private boolean lineWaiting(BufferedReader in) throws IOException
+        {
+            in.mark(LOOKAHEAD);
+            try
             {
-                g.addText("Player " + game.getWinner() + " won");
-                g.updateBoard(game);
+                for (int i = 0; i < LOOKAHEAD && in.ready(); i++)
+                {
+                    int c = in.read();
+                    if (c < 0)
+                    {
+                        return false;
+                    }
+                    if (c == '\n' || c == '\r')
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            finally
+            {
+                in.reset();
             }
-
-            //Valid move
-            return game.toString();
         }
     }
 }
-
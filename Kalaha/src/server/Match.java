@@ -0,0 +1,416 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import kalaha.*;
+
+/**
+ * One game hosted by the server, with its own game state and players.
+ * All methods lock the match, so the two client threads of a game never
+ * see it in the middle of a move, and different games never wait for each
+ * other.
+ *
+ * A player can subscribe to the events of the game. The player to move is
+ * then sent YOUR_TURN after every change of the game, and both players
+ * are sent GAME_OVER when it ends. The events are queued on the players'
+ * connections while the match is locked, and written once it is unlocked
+ * by the connection's own writer thread or event loop, so a client that
+ * does not read can not hold up the game or the other player.
+ *
+ * A player that leaves a game in progress forfeits it. The other player
+ * wins, and is sent GAME_OVER.
+ */
+public class Match
+{
+    private final int id;
+    private final ServerGUI g;
+    private GameState game;
+    private int players;
+    private int left;
+
+    //Winner if a player has left the game in progress, otherwise -1
+    private int forfeitWinner = -1;
+
+    //Subscribed players, by player number
+    private final EventSink[] subscribers = new EventSink[3];
+
+    //Connections with events queued but not yet written
+    private final List<EventSink> queued = new ArrayList<EventSink>(2);
+
+    /**
+     * Creates a new match.
+     *
+     * @param id Game id
+     * @param g GUI showing the game, or null if it is not shown
+     */
+    public Match(int id, ServerGUI g)
+    {
+        this.id = id;
+        this.g = g;
+        game = new GameState();
+    }
+
+    /**
+     * Returns the id of this game.
+     *
+     * @return Game id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Adds a player to this game.
+     *
+     * @return Player number (1 or 2), or -1 if the game is full
+     */
+    public int addPlayer()
+    {
+        int player = add();
+        deliver();
+        return player;
+    }
+
+    /**
+     * Adds a player, see addPlayer(). Events are only queued, and must be
+     * written with deliver().
+     *
+     * @return Player number, or -1 if the game is full
+     */
+    synchronized int add()
+    {
+        if (players == 2)
+        {
+            return -1;
+        }
+        players++;
+
+        if (g != null)
+        {
+            g.addText("Client " + players + " connected");
+            if (players == 2)
+            {
+                //Both players connected. Update board.
+                g.updateBoard(game);
+            }
+        }
+        if (players == 2)
+        {
+            notifyPlayers();
+        }
+        return players;
+    }
+
+    /**
+     * Removes a player that has disconnected. The seat is not given to
+     * anyone else. If the game is in progress, the other player wins. The
+     * GAME_OVER event is only queued, and must be written with deliver().
+     *
+     * @param player Player number
+     * @return True if all players of the game have left
+     */
+    synchronized boolean removePlayer(int player)
+    {
+        left++;
+        subscribers[player] = null;
+        if (players == 2 && left == 1 && !game.isTerminal())
+        {
+            forfeitWinner = 3 - player;
+            if (g != null)
+            {
+                g.addText("Player " + player + " left, Player " + forfeitWinner + " won");
+            }
+            if (subscribers[forfeitWinner] != null)
+            {
+                push(subscribers[forfeitWinner], Commands.GAME_OVER + " " + forfeitWinner);
+            }
+        }
+        return left == players;
+    }
+
+    /**
+     * Checks if the game has ended, by the rules or because a player left.
+     *
+     * @return True if the game has ended
+     */
+    private boolean isOver()
+    {
+        return forfeitWinner >= 0 || game.isTerminal();
+    }
+
+    /**
+     * Returns the winner, also if a player has left.
+     *
+     * @return Winner, 0 for a draw, or -1 if the game has not ended
+     */
+    private int winner()
+    {
+        return forfeitWinner >= 0 ? forfeitWinner : game.getWinner();
+    }
+
+    /**
+     * Subscribes a player to the events of this game. If it is already the
+     * player's turn, or the game has ended, the player is told at once.
+     *
+     * @param player Player number
+     * @param sink Where to send the events
+     */
+    public void subscribe(int player, EventSink sink)
+    {
+        synchronized (this)
+        {
+            subscribers[player] = sink;
+            if (isFull())
+            {
+                if (isOver())
+                {
+                    push(sink, Commands.GAME_OVER + " " + winner());
+                }
+                else if (game.getNextPlayer() == player)
+                {
+                    push(sink, Commands.YOUR_TURN + " " + game.toString());
+                }
+            }
+        }
+        deliver();
+    }
+
+    /**
+     * Tells the subscribed players about the current state: GAME_OVER to
+     * both if the game has ended, otherwise YOUR_TURN to the player to
+     * move. Called with the match locked.
+     */
+    private void notifyPlayers()
+    {
+        if (game.isTerminal())
+        {
+            String event = Commands.GAME_OVER + " " + game.getWinner();
+            for (int p = 1; p <= 2; p++)
+            {
+                if (subscribers[p] != null)
+                {
+                    push(subscribers[p], event);
+                }
+            }
+        }
+        else
+        {
+            EventSink s = subscribers[game.getNextPlayer()];
+            if (s != null)
+            {
+                push(s, Commands.YOUR_TURN + " " + game.toString());
+            }
+        }
+    }
+
+    /**
+     * Queues an event on a connection. Called with the match locked.
+     *
+     * @param sink The connection
+     * @param event Event line
+     */
+    private void push(EventSink sink, String event)
+    {
+        sink.push(event);
+        if (!queued.contains(sink))
+        {
+            queued.add(sink);
+        }
+    }
+
+    /**
+     * Writes the queued events. Called with the match unlocked, so writing
+     * to a slow connection never holds up the game.
+     */
+    void deliver()
+    {
+        EventSink[] sinks;
+        synchronized (this)
+        {
+            if (queued.isEmpty())
+            {
+                return;
+            }
+            sinks = queued.toArray(new EventSink[queued.size()]);
+            queued.clear();
+        }
+        for (EventSink s : sinks)
+        {
+            s.deliver();
+        }
+    }
+
+    /**
+     * Checks if both players have joined this game.
+     *
+     * @return True if both players have joined, false otherwise.
+     */
+    public synchronized boolean isFull()
+    {
+        return players == 2;
+    }
+
+    /**
+     * Returns the current board.
+     *
+     * @return Board string
+     */
+    public synchronized String getBoard()
+    {
+        return game.toString();
+    }
+
+    /**
+     * Returns the next player to make a move.
+     *
+     * @return Next player, or an error if the game is not full
+     */
+    public synchronized String getNextPlayer()
+    {
+        if (!isFull())
+        {
+            return Errors.GAME_NOT_FULL;
+        }
+        return "" + game.getNextPlayer();
+    }
+
+    /**
+     * Returns the winner of this game.
+     *
+     * @return Winner, 0 for a draw, -1 if the game has not ended, or an
+     * error if the game is not full
+     */
+    public synchronized String getWinner()
+    {
+        if (!isFull())
+        {
+            return Errors.GAME_NOT_FULL;
+        }
+        return "" + winner();
+    }
+
+    /**
+     * Returns the winner, the next player and the board of this game, all
+     * read at the same time.
+     *
+     * @return TURN followed by the winner (-1 if the game has not ended),
+     * the next player and the board string, or an error if the game is not
+     * full
+     */
+    public synchronized String getTurn()
+    {
+        if (!isFull())
+        {
+            return Errors.GAME_NOT_FULL;
+        }
+        return Commands.TURN + " " + winner() + " " + game.getNextPlayer() + " " + game.toString();
+    }
+
+    /**
+     * Starts a new game with the same players.
+     *
+     * @return Board string, or an error if the game is not full
+     */
+    public String newGame()
+    {
+        String reply = restart();
+        deliver();
+        return reply;
+    }
+
+    /**
+     * Starts a new game, see newGame().
+     *
+     * @return Board string, or an error if the game is not full
+     */
+    private synchronized String restart()
+    {
+        if (!isFull())
+        {
+            return Errors.GAME_NOT_FULL;
+        }
+        if (forfeitWinner >= 0)
+        {
+            return Errors.OPPONENT_LEFT;
+        }
+        if (g != null)
+        {
+            g.addText("New game");
+        }
+        game = new GameState();
+        notifyPlayers();
+        return game.toString();
+    }
+
+    /**
+     * Tries to make a move requested by a client.
+     *
+     * @param ambo Ambo to move (1-6)
+     * @param player Player making the move
+     * @return Board string, or an error if the move is not allowed
+     */
+    public String makeMove(int ambo, int player)
+    {
+        String reply = move(ambo, player);
+        deliver();
+        return reply;
+    }
+
+    /**
+     * Makes a move, see makeMove().
+     *
+     * @param ambo Ambo to move (1-6)
+     * @param player Player making the move
+     * @return Board string, or an error if the move is not allowed
+     */
+    private synchronized String move(int ambo, int player)
+    {
+        if (!isFull())
+        {
+            return Errors.GAME_NOT_FULL;
+        }
+        if (forfeitWinner >= 0)
+        {
+            return Errors.OPPONENT_LEFT;
+        }
+
+        //Check if move is valid
+        if (ambo < 1 || ambo > 6)
+        {
+            return Errors.INVALID_MOVE;
+        }
+
+        //Check if the correct player is
+        //making the move
+        if(player != game.getNextPlayer())
+        {
+            return Errors.WRONG_PLAYER;
+        }
+
+        //Check if the ambo is empty
+        if(game.getSeeds(ambo, player) == 0)
+        {
+            return Errors.AMBO_EMPTY;
+        }
+
+        //Make the move!
+        game.makeMove(ambo);
+        if (g != null)
+        {
+            g.addText("Move " + ambo + " by Player " + player);
+            g.updateBoard(game);
+
+            if(game.isTerminal())
+            {
+                g.addText("Player " + game.getWinner() + " won");
+                g.updateBoard(game);
+            }
+        }
+
+        notifyPlayers();
+
+        //Valid move
+        return game.toString();
+    }
+}
@@ -0,0 +1,529 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking game server, serving all clients with a small, fixed number
+ * of event loops instead of one thread per client.
+ *
+ * Each event loop has its own Selector and serves the connections given to
+ * it by the accepting loop, round robin. Commands are parsed directly from
+ * the bytes read, one per line, and executed by the ClientSession of the
+ * connection. All replies to the commands of one read are written
+ * together.
+ *
+ * An idle connection holds no buffers. Each loop reads into and writes
+ * from one buffer of its own, and a connection borrows a buffer from the
+ * pool only to keep a partial command line or a reply that the socket did
+ * not take at once. While a connection has replies waiting to be written,
+ * no more commands are read from it.
+ *
+ * Game events pushed from other threads are queued on the connection, and
+ * written by its own event loop.
+ */
+public class NioServer
+{
+    /**
+     * Size of the buffers, which is also the max length of a command line.
+     */
+    public static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Room left in the output buffer before each command is executed, or
+     * each event is added. Must be larger than any reply or event.
+     */
+    private static final int MAX_REPLY = 256;
+
+    private final KalahaServer server;
+    private final EventLoop[] loops;
+    private final BufferPool pool = new BufferPool(BUFFER_SIZE);
+    private ServerSocketChannel acceptor;
+    private volatile boolean running;
+    private int nextLoop;
+
+    /**
+     * Creates a new NIO server.
+     *
+     * @param server The game server, which holds the games
+     * @param loops Number of event loops
+     */
+    public NioServer(KalahaServer server, int loops)
+    {
+        this.server = server;
+        this.loops = new EventLoop[Math.max(loops, 1)];
+    }
+
+    /**
+     * Opens the server socket and starts the event loops.
+     *
+     * @param port Network port
+     * @throws IOException If the port can not be opened
+     */
+    public void start(int port) throws IOException
+    {
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(new InetSocketAddress(port));
+        acceptor.configureBlocking(false);
+
+        running = true;
+        for (int i = 0; i < loops.length; i++)
+        {
+            loops[i] = new EventLoop();
+        }
+        acceptor.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (int i = 0; i < loops.length; i++)
+        {
+            new Thread(loops[i], "NIO loop " + (i + 1)).start();
+        }
+    }
+
+    /**
+     * Stops the event loops and closes all connections.
+     */
+    public void stop()
+    {
+        running = false;
+        for (EventLoop l : loops)
+        {
+            l.selector.wakeup();
+        }
+        try
+        {
+            acceptor.close();
+        }
+        catch (IOException ex)
+        {
+            //Already closed
+        }
+    }
+
+    /**
+     * Accepts all waiting connections and hands them to the event loops.
+     */
+    private void accept() throws IOException
+    {
+        SocketChannel ch;
+        while ((ch = acceptor.accept()) != null)
+        {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            EventLoop l = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            l.pending.offer(ch);
+            l.selector.wakeup();
+        }
+    }
+
+    /**
+     * A client connection.
+     */
+    private class Connection implements EventSink
+    {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final ClientSession session;
+        private SelectionKey key;
+
+        //Events not yet written
+        private final ConcurrentLinkedQueue<String> events = new ConcurrentLinkedQueue<String>();
+
+        //Partial command line, in write mode, or null if there is none
+        private ByteBuffer in;
+
+        //Replies not yet written, in write mode, or null if there are none
+        private ByteBuffer out;
+
+        Connection(SocketChannel channel, EventLoop loop)
+        {
+            this.channel = channel;
+            this.loop = loop;
+            session = new ClientSession(server, this);
+        }
+
+        /**
+         * Queues an event.
+         *
+         * @param event Event line
+         */
+        public void push(String event)
+        {
+            events.offer(event);
+        }
+
+        /**
+         * Wakes up the event loop of the connection to write the queued
+         * events.
+         */
+        public void deliver()
+        {
+            loop.pushed.offer(this);
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * One event loop thread with its own Selector.
+     */
+    private class EventLoop implements Runnable
+    {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<SocketChannel>();
+        private final ConcurrentLinkedQueue<Connection> pushed = new ConcurrentLinkedQueue<Connection>();
+        private final ByteBuffer readBuffer = pool.acquire();
+        private final ByteBuffer writeBuffer = pool.acquire();
+
+        EventLoop() throws IOException
+        {
+            selector = Selector.open();
+        }
+
+        /**
+         * Waits for and handles events until the server is stopped.
+         */
+        public void run()
+        {
+            try
+            {
+                while (running)
+                {
+                    register();
+                    deliverAll();
+                    selector.select();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext())
+                    {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (!key.isValid())
+                        {
+                            continue;
+                        }
+
+                        if (key.isAcceptable())
+                        {
+                            accept();
+                            continue;
+                        }
+
+                        Connection c = (Connection)key.attachment();
+                        try
+                        {
+                            if (key.isWritable())
+                            {
+                                write(c);
+                            }
+                            else if (key.isReadable())
+                            {
+                                read(c);
+                            }
+                        }
+                        catch (IOException ex)
+                        {
+                            close(c);
+                        }
+                    }
+                }
+            }
+            catch (ClosedSelectorException ex)
+            {
+                //Stopped
+            }
+            catch (IOException ex)
+            {
+                server.log("Event loop error: " + ex.getMessage());
+            }
+
+            for (SelectionKey key : selector.keys())
+            {
+                if (key.attachment() != null)
+                {
+                    close((Connection)key.attachment());
+                }
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException ex)
+            {
+                //Already closed
+            }
+        }
+
+        /**
+         * Registers the connections handed to this loop.
+         */
+        private void register() throws IOException
+        {
+            SocketChannel ch;
+            while ((ch = pending.poll()) != null)
+            {
+                Connection c = new Connection(ch, this);
+                c.key = ch.register(selector, SelectionKey.OP_READ, c);
+            }
+        }
+
+        /**
+         * Writes the events pushed to the connections of this loop.
+         */
+        private void deliverAll()
+        {
+            Connection c;
+            while ((c = pushed.poll()) != null)
+            {
+                try
+                {
+                    deliver(c);
+                }
+                catch (IOException ex)
+                {
+                    close(c);
+                }
+            }
+        }
+
+        /**
+         * Writes the events pushed to a connection. If replies are waiting
+         * to be written, the events are written after them.
+         *
+         * @param c The connection
+         */
+        private void deliver(Connection c) throws IOException
+        {
+            if (!c.key.isValid() || c.out != null || c.events.isEmpty())
+            {
+                return;
+            }
+
+            ByteBuffer out = writeBuffer;
+            String event;
+            while (c.out == null && (event = c.events.poll()) != null)
+            {
+                put(out, event);
+                if (out.remaining() < MAX_REPLY)
+                {
+                    out = flush(c, out);
+                }
+            }
+            flush(c, out);
+            if (c.out != null)
+            {
+                c.key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        /**
+         * Reads from a connection and executes the complete commands.
+         *
+         * @param c The connection
+         */
+        private void read(Connection c) throws IOException
+        {
+            ByteBuffer buf = c.in != null ? c.in : readBuffer;
+            int n = c.channel.read(buf);
+            if (n < 0)
+            {
+                close(c);
+                return;
+            }
+            buf.flip();
+            handle(c, buf);
+        }
+
+        /**
+         * Writes waiting replies, and continues with the commands already
+         * read once all replies are written.
+         *
+         * @param c The connection
+         */
+        private void write(Connection c) throws IOException
+        {
+            c.out.flip();
+            c.channel.write(c.out);
+            c.out.compact();
+            if (c.out.position() > 0)
+            {
+                return;
+            }
+
+            pool.release(c.out);
+            c.out = null;
+            deliver(c);
+            if (c.out != null)
+            {
+                return;
+            }
+            if (c.in != null)
+            {
+                c.in.flip();
+                handle(c, c.in);
+            }
+            else
+            {
+                c.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Executes the complete command lines of an input buffer and writes
+         * the replies. What is left of the input is kept in the connection.
+         *
+         * @param c The connection
+         * @param buf Input, in read mode
+         */
+        private void handle(Connection c, ByteBuffer buf) throws IOException
+        {
+            ByteBuffer out = c.out != null ? c.out : writeBuffer;
+            byte[] a = buf.array();
+            int start = buf.position();
+            int limit = buf.limit();
+            boolean blocked = false;
+
+            for (int i = start; i < limit; i++)
+            {
+                if (a[i] != '\n')
+                {
+                    continue;
+                }
+
+                if (out.remaining() < MAX_REPLY)
+                {
+                    out = flush(c, out);
+                    if (out.remaining() < MAX_REPLY)
+                    {
+                        blocked = true;
+                        break;
+                    }
+                }
+
+                int end = i > start && a[i - 1] == '\r' ? i - 1 : i;
+                put(out, c.session.execute(new String(a, start, end - start, StandardCharsets.US_ASCII)));
+                start = i + 1;
+            }
+            buf.position(start);
+            flush(c, out);
+
+            //Keep the rest of the input
+            if (buf.hasRemaining())
+            {
+                if (buf == readBuffer)
+                {
+                    c.in = pool.acquire();
+                    c.in.put(buf);
+                }
+                else
+                {
+                    buf.compact();
+                    if (!buf.hasRemaining() && !blocked)
+                    {
+                        //Line longer than the buffer
+                        close(c);
+                        return;
+                    }
+                }
+            }
+            else if (buf == c.in)
+            {
+                pool.release(c.in);
+                c.in = null;
+            }
+            readBuffer.clear();
+
+            c.key.interestOps(c.out != null ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        /**
+         * Adds a line to an output buffer.
+         *
+         * @param out Output buffer, in write mode
+         * @param line The line, without line break
+         */
+        private void put(ByteBuffer out, String line)
+        {
+            for (int j = 0; j < line.length(); j++)
+            {
+                out.put((byte)line.charAt(j));
+            }
+            out.put((byte)'\n');
+        }
+
+        /**
+         * Writes replies to the socket. What the socket does not take is
+         * kept in a pooled buffer of the connection.
+         *
+         * @param c The connection
+         * @param out Replies, in write mode
+         * @return Buffer to add more replies to
+         */
+        private ByteBuffer flush(Connection c, ByteBuffer out) throws IOException
+        {
+            out.flip();
+            if (out.hasRemaining())
+            {
+                c.channel.write(out);
+            }
+
+            if (!out.hasRemaining())
+            {
+                out.clear();
+                if (out == c.out)
+                {
+                    pool.release(c.out);
+                    c.out = null;
+                    return writeBuffer;
+                }
+                return out;
+            }
+
+            if (out == writeBuffer)
+            {
+                c.out = pool.acquire();
+                c.out.put(out);
+                writeBuffer.clear();
+                return c.out;
+            }
+            out.compact();
+            return out;
+        }
+
+        /**
+         * Closes a connection and returns its buffers.
+         *
+         * @param c The connection
+         */
+        private void close(Connection c)
+        {
+            c.key.cancel();
+            try
+            {
+                c.channel.close();
+            }
+            catch (IOException ex)
+            {
+                //Already closed
+            }
+            if (c.in != null)
+            {
+                pool.release(c.in);
+                c.in = null;
+            }
+            if (c.out != null)
+            {
+                pool.release(c.out);
+                c.out = null;
+            }
+            c.session.close();
+        }
+    }
+}